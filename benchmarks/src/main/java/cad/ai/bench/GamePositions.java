@@ -0,0 +1,170 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * GamePositions:
+ *    The fixed sets of positions the engine benchmarks run on.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.bench;
+
+import cad.ai.game.NimGame;
+import cad.ai.game.OthelloGame;
+import cad.ai.game.TicTacToeGame;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+
+/***********************************************************
+ * Reproducible positions for each phase of each game.
+ *   Every position comes from a random game played with its own fixed seed.
+ *   The legal moves are sorted before one is picked, so the sets do not depend on
+ *   the order an engine lists its moves in - a rewritten engine is measured on
+ *   exactly the same positions as the current one.
+ ***********************************************************/
+public class GamePositions {
+    public static enum Phase { OPENING, MIDGAME, ENDGAME };
+    public static final int COUNT = 64;  // Positions per set (a power of 2 - see next)
+    public static final long SEED = 350;
+
+    /** The index after i, cycling through a set **/
+    public static int next(int i) { return (i + 1) & (COUNT - 1); }
+
+    /***********************************************************
+     * An Othello position with a legal move for the player to move.
+     ***********************************************************/
+    public static class Othello {
+        public final int turn;
+        public final char[][] board;
+        public final String state;  // As getState sends it
+        public final int row, col;  // A legal move for turn
+
+        Othello(int turn, char[][] board, String state, int row, int col) {
+            this.turn = turn;
+            this.board = board;
+            this.state = state;
+            this.row = row;
+            this.col = col;
+        }
+    }
+
+    /** A fresh server-side Othello game of this size **/
+    public static OthelloGame newOthello(int size) { return new OthelloGame(-1, null, null, true, 0, size, size); }
+
+    /** The legal moves of the player to move, in row-major order **/
+    private static ArrayList<OthelloGame.Action> sortedActions(OthelloGame game) {
+        ArrayList<OthelloGame.Action> actions = game.getActions(game.getTurn());
+        actions.sort(Comparator.comparingInt((OthelloGame.Action a) -> a.row).thenComparingInt(a -> a.col));
+        return actions;
+    }
+
+    /**
+     * COUNT positions of a size x size board in this phase - ones where the
+     * player to move has a move.
+     *   OPENING is 5-20% of the way through a game (by squares filled), MIDGAME 40-55%, ENDGAME 75-85%.
+     **/
+    public static Othello[] othello(int size, Phase phase) {
+        int empties = size * size - 4;
+        double low = phase == Phase.OPENING ? 0.05 : phase == Phase.MIDGAME ? 0.40 : 0.75;
+        double high = phase == Phase.OPENING ? 0.20 : phase == Phase.MIDGAME ? 0.55 : 0.85;
+        int minPlies = Math.max(1, (int) (empties * low));
+        int maxPlies = Math.max(minPlies, (int) (empties * high));
+
+        Othello[] positions = new Othello[COUNT];
+        long seed = SEED;
+        for (int i = 0; i < COUNT; seed++) {
+            Random ran = new Random(seed);
+            OthelloGame game = newOthello(size);
+            int plies = minPlies + ran.nextInt(maxPlies - minPlies + 1);
+            for (int p = 0; p < plies && !game.isDone(); p++) {
+                ArrayList<OthelloGame.Action> actions = sortedActions(game);
+                game.applyMove(game.getTurn(), actions.get(ran.nextInt(actions.size())));
+            }
+            if (game.isDone()) continue;  // Ended early - try the next seed
+
+            ArrayList<OthelloGame.Action> actions = sortedActions(game);
+            OthelloGame.Action move = actions.get(ran.nextInt(actions.size()));
+            char[][] board = (char[][]) game.getStateAsObject();
+            char[][] copy = new char[size][];
+            for (int r = 0; r < size; r++) copy[r] = board[r].clone();
+            positions[i++] = new Othello(game.getTurn(), copy, game.getState(true), move.row, move.col);
+        }
+        return positions;
+    }
+
+    /**
+     * COUNT Tic-Tac-Toe boards in this phase.
+     *   OPENING has 1-2 marks, MIDGAME 3-5, ENDGAME 6-9 (so some are won or tied).
+     **/
+    public static char[][] ticTacToe(Phase phase) {
+        int minMarks = phase == Phase.OPENING ? 1 : phase == Phase.MIDGAME ? 3 : 6;
+        int maxMarks = phase == Phase.OPENING ? 2 : phase == Phase.MIDGAME ? 5 : 9;
+        char[][] boards = new char[COUNT][];
+        for (int i = 0; i < COUNT; i++) {
+            Random ran = new Random(SEED + i);
+            TicTacToeGame game = new TicTacToeGame(-1, null, null, true, 0);
+            int marks = minMarks + ran.nextInt(maxMarks - minMarks + 1);
+            for (int m = 0; m < marks && !game.isDone(); m++) {
+                char[] board = (char[]) game.getStateAsObject();
+                int slot;
+                do slot = ran.nextInt(board.length); while (board[slot] != ' ');
+                game.applyMove(game.getTurn(), slot);
+            }
+            boards[i] = ((char[]) game.getStateAsObject()).clone();
+        }
+        return boards;
+    }
+
+    /***********************************************************
+     * A Nim position with a legal move that does not end the game.
+     ***********************************************************/
+    public static class Nim {
+        public final int turn;
+        public final int[] sticks;
+        public final String move;  // "row,take"
+
+        Nim(int turn, int[] sticks, String move) {
+            this.turn = turn;
+            this.sticks = sticks;
+            this.move = move;
+        }
+    }
+
+    /**
+     * COUNT Nim positions in this phase (3-10 rows of 5-100 sticks to start with, like NimGame).
+     *   OPENING has every stick, MIDGAME about half of them and ENDGAME a few per row.
+     **/
+    public static Nim[] nim(Phase phase) {
+        Nim[] positions = new Nim[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            Random ran = new Random(SEED + i);
+            int[] sticks = new int[3 + ran.nextInt(8)];
+            int total = 0;
+            for (int r = 0; r < sticks.length; r++) total += sticks[r] = 5 + ran.nextInt(96);
+            int target = phase == Phase.OPENING ? total : phase == Phase.MIDGAME ? total / 2 : 2 * sticks.length;
+            int turn = 0;
+            while (total > target) {
+                int row;
+                do row = ran.nextInt(sticks.length); while (sticks[row] == 0);
+                int take = 1 + ran.nextInt(Math.min(sticks[row], total - target));
+                sticks[row] -= take;
+                total -= take;
+                turn ^= 1;
+            }
+
+            int row;
+            do row = ran.nextInt(sticks.length); while (sticks[row] == 0);
+            int take = 1 + ran.nextInt(Math.min(sticks[row], total - 1));  // Leave at least one stick
+            positions[i] = new Nim(turn, sticks, row + "," + take);
+        }
+        return positions;
+    }
+
+    /** A fresh server-side Nim game (its random rows are replaced by updateState) **/
+    public static NimGame newNim() { return new NimGame(-1, null, null, true, 0); }
+}
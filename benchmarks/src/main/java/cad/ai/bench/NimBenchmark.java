@@ -0,0 +1,61 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * NimBenchmark:
+ *    JMH benchmark of NimGame.processMove.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.bench;
+
+import cad.ai.game.NimGame;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/***********************************************************
+ * processMove (the String a client sends) over a fixed set of positions
+ * (see GamePositions).  As in OthelloBenchmark, restore measures the reset
+ * that comes before each move.
+ ***********************************************************/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NimBenchmark {
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    public GamePositions.Phase phase;
+
+    private GamePositions.Nim[] positions;
+    private NimGame scratch;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        positions = GamePositions.nim(phase);
+        scratch = GamePositions.newNim();
+        next = 0;
+    }
+
+    @Benchmark
+    public NimGame restore() {
+        next = GamePositions.next(next);
+        GamePositions.Nim p = positions[next];
+        scratch.updateState(p.turn, p.sticks);
+        return scratch;
+    }
+
+    @Benchmark
+    public String processMove() {
+        next = GamePositions.next(next);
+        GamePositions.Nim p = positions[next];
+        scratch.updateState(p.turn, p.sticks);
+        return scratch.processMove(p.turn, p.move);
+    }
+}
@@ -0,0 +1,102 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * OthelloBenchmark:
+ *    JMH benchmarks of the OthelloGame engine.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.bench;
+
+import cad.ai.game.OthelloGame;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/***********************************************************
+ * Each call works on the next position of a fixed set (see GamePositions),
+ * so one lucky position can't dominate the result.
+ *   processMove changes the board, so each call first resets a scratch game
+ *   with updateState(int, char[][]) - restore measures that reset alone and
+ *   the cost of processMove is the difference between the two.
+ *   Boards of 8x8 use the bitboard engine, other sizes the char[][] one.
+ ***********************************************************/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OthelloBenchmark {
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    public GamePositions.Phase phase;
+
+    @Param({"8", "6"})
+    public int size;
+
+    private GamePositions.Othello[] positions;
+    private OthelloGame[] games;  // One per position, for the benchmarks that don't change it
+    private OthelloGame scratch;  // Reset before every move
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        positions = GamePositions.othello(size, phase);
+        games = new OthelloGame[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            games[i] = GamePositions.newOthello(size);
+            games[i].updateState(positions[i].turn, positions[i].board);
+        }
+        scratch = GamePositions.newOthello(size);
+        next = 0;
+    }
+
+    @Benchmark
+    public ArrayList<OthelloGame.Action> getActions() {
+        next = GamePositions.next(next);
+        return games[next].getActions(positions[next].turn);
+    }
+
+    /** Positions where the player to move has a move - so nothing changes **/
+    @Benchmark
+    public boolean computeWinner() {
+        next = GamePositions.next(next);
+        return games[next].computeWinner();
+    }
+
+    @Benchmark
+    public String getState() {
+        next = GamePositions.next(next);
+        return games[next].getState(true);
+    }
+
+    /** From the String a client receives **/
+    @Benchmark
+    public OthelloGame updateState() {
+        next = GamePositions.next(next);
+        scratch.updateState(positions[next].state);
+        return scratch;
+    }
+
+    /** The reset before processMove **/
+    @Benchmark
+    public OthelloGame restore() {
+        next = GamePositions.next(next);
+        GamePositions.Othello p = positions[next];
+        scratch.updateState(p.turn, p.board);
+        return scratch;
+    }
+
+    @Benchmark
+    public boolean processMove() {
+        next = GamePositions.next(next);
+        GamePositions.Othello p = positions[next];
+        scratch.updateState(p.turn, p.board);
+        return scratch.processMove(p.turn, p.row, p.col);
+    }
+}
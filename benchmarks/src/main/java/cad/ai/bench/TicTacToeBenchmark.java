@@ -0,0 +1,53 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * TicTacToeBenchmark:
+ *    JMH benchmark of TicTacToeGame.computeWinner.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.bench;
+
+import cad.ai.game.TicTacToeGame;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/***********************************************************
+ * computeWinner over a fixed set of boards (see GamePositions).
+ *   The ENDGAME set includes won and tied boards, which take the other paths.
+ ***********************************************************/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TicTacToeBenchmark {
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    public GamePositions.Phase phase;
+
+    private TicTacToeGame[] games;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        char[][] boards = GamePositions.ticTacToe(phase);
+        games = new TicTacToeGame[boards.length];
+        for (int i = 0; i < boards.length; i++) {
+            games[i] = new TicTacToeGame(-1, null, null, true, 0);
+            games[i].updateState(boards[i]);
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean computeWinner() {
+        next = GamePositions.next(next);
+        return games[next].computeWinner();
+    }
+}
@@ -16,6 +16,8 @@ package cad.ai.client;
 
 import java.net.*;
 import java.io.PrintWriter;
+import java.io.PrintStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
@@ -53,6 +55,7 @@ public class GameClient {
     private boolean done = false;
     private int verbose;
     private FutureTask<Integer> player;  // The Player Thread (so we can kill if needed)
+    private PrintStream statsLog = null;  // Where to log the AI's search statistics (null = don't)
 
     /**
      * Constructor
@@ -104,8 +107,11 @@ public class GameClient {
         if (_game.isPlayerTurn()) {
             String move = _game.getMove();
             System.out.println("DEBUG: Passing along getMove result!");
+            logMoveStats(move);
             Connection _conn = conn; // Again, just in case.
             _conn.postMessageLn(move);
+        } else if (ai instanceof PonderingAI) {
+            ((PonderingAI) ai).ponder();  // Think on the opponent's time (if the AI is set up to)
         }
     }
 
@@ -167,7 +173,11 @@ public class GameClient {
                 // Redundant - used to support additional AI options if desired
                 switch (aiLevel) {
                 case 1: ai = new OthelloAlphaBetaAI(); break;
-                case 2: ai = new OthelloAlphaBetaAI(); break;
+                case 2:  // Search with every processor
+                    OthelloAlphaBetaAI smp = new OthelloAlphaBetaAI();
+                    smp.setThreads(Runtime.getRuntime().availableProcessors());
+                    ai = smp;
+                    break;
                 default: ai = new OthelloAlphaBetaAI();
                 }
                 break;
@@ -179,6 +189,85 @@ public class GameClient {
     }
 
     public synchronized void setDone(boolean flag) { done = flag; }
+
+    /**
+     * Set the number of threads the AI searches with (if it can search in parallel)
+     **/
+    public synchronized void setSearchThreads(int threads) {
+        if (ai instanceof OthelloAlphaBetaAI)
+            ((OthelloAlphaBetaAI) ai).setThreads(threads);
+    }
+
+    /**
+     * Make the AI search to a fixed depth (deterministic - same board, same move)
+     **/
+    public synchronized void setSearchDepth(int depth) {
+        if (ai instanceof OthelloAlphaBetaAI)
+            ((OthelloAlphaBetaAI) ai).setFixedDepth(depth);
+    }
+
+    /**
+     * Evaluate with the pattern tables in this file (see OthelloPatterns)
+     **/
+    public synchronized void setPatternFile(String fileName) {
+        if (ai instanceof OthelloAlphaBetaAI)
+            ((OthelloAlphaBetaAI) ai).loadPatterns(fileName);
+    }
+
+    /**
+     * Play from this opening book (see cad.ai.game.OthelloBook)
+     **/
+    public synchronized void setBookFile(String fileName) {
+        if (ai instanceof OthelloAlphaBetaAI) {
+            if (fileName.equals("none")) ((OthelloAlphaBetaAI) ai).setBook(null);
+            else ((OthelloAlphaBetaAI) ai).loadBook(fileName);
+        }
+    }
+
+    /**
+     * Let the AI think while the opponent is thinking
+     * @param mode OthelloAlphaBetaAI.PONDER_OFF, PONDER_PREDICTED or PONDER_ALL
+     **/
+    public synchronized void setPondering(int mode) {
+        if (ai instanceof OthelloAlphaBetaAI)
+            ((OthelloAlphaBetaAI) ai).setPondering(mode);
+    }
+
+    /**
+     * Log the AI's search statistics (if it keeps them, see InstrumentedAI)
+     * after every move and at the end of every game.
+     * @param fileName The file to append them to ("-" for standard output)
+     **/
+    public synchronized void setStatsLog(String fileName) throws IOException {
+        statsLog = fileName.equals("-") ? System.out : new PrintStream(new FileOutputStream(fileName, true), true);
+    }
+
+    /**
+     * Log what the search for this move did
+     **/
+    private void logMoveStats(String move) {
+        PrintStream log = statsLog;
+        if (log == null || !(ai instanceof InstrumentedAI)) return;
+        SearchStats stats = ((InstrumentedAI) ai).getMoveStats();
+        log.println(pname + " move " + move + ": " + (stats == null ? "no search" : stats.toString()));
+    }
+
+    /**
+     * Log the totals of the game just finished
+     **/
+    private void logGameStats(char result) {
+        PrintStream log = statsLog;
+        if (log == null || !(ai instanceof InstrumentedAI)) return;
+        log.println(pname + " game (" + result + "): " + ((InstrumentedAI) ai).getGameStats().summary());
+    }
+
+    /**
+     * Number of empty squares at which the AI starts solving the endgame (0 = never)
+     **/
+    public synchronized void setEndgameEmpties(int empties) {
+        if (ai instanceof OthelloAlphaBetaAI)
+            ((OthelloAlphaBetaAI) ai).setEndgameEmpties(empties);
+    }
     
     /**
      * Start running the thread for this connection
@@ -529,6 +618,7 @@ public class GameClient {
             } else {
                 char result = pieces[2].charAt(0);
                 game.postWinner(result);
+                logGameStats(result);
                 game = null;  // No longer need to store this game
             }
         }
@@ -600,6 +690,13 @@ public class GameClient {
         boolean ai = true;
         int aiLevel = 1;
         int verbose = 1;  // How "noisy" to be
+        int threads = 0;  // Search threads (0 = whatever the AI level uses)
+        int depth = 0;    // Fixed search depth (0 = use the clock)
+        int endgame = -1; // Empties to start solving the endgame at (-1 = the AI's default)
+        String patterns = null;  // Pattern table file (null = the AI's built in evaluation)
+        String stats = null;     // Search statistics log (null = none)
+        String book = null;      // Opening book file (null = the AI's default)
+        int ponder = OthelloAlphaBetaAI.PONDER_OFF;  // Think on the opponent's time
         GameType gameType = DEFAULT_GAME;  // Use Default first
     
         // Parse the arguments
@@ -630,6 +727,20 @@ public class GameClient {
                     else printUsage("AI setting must be true or false");
                     break;
                 case "--level": aiLevel = Integer.parseInt(params[1]); break;
+                case "--threads": threads = Integer.parseInt(params[1]); break;
+                case "--depth": depth = Integer.parseInt(params[1]); break;
+                case "--endgame": endgame = Integer.parseInt(params[1]); break;
+                case "--patterns": patterns = params[1]; break;
+                case "--stats": stats = params[1]; break;
+                case "--book": book = params[1]; break;
+                case "--ponder":
+                    switch (params[1].toLowerCase()) {
+                    case "off": ponder = OthelloAlphaBetaAI.PONDER_OFF; break;
+                    case "predicted": ponder = OthelloAlphaBetaAI.PONDER_PREDICTED; break;
+                    case "all": ponder = OthelloAlphaBetaAI.PONDER_ALL; break;
+                    default: printUsage("Unrecognized ponder option: " + params[1]);
+                    }
+                    break;
                 case "--verbose":
                     verbose = Integer.parseInt(params[1]); break;
                 default:
@@ -645,6 +756,19 @@ public class GameClient {
 
         GameClient c = new GameClient(hostname, port, name, pid, code, tid, 
                                       ai, aiLevel, verbose, gameType);
+        if (threads > 0) c.setSearchThreads(threads);
+        if (depth > 0) c.setSearchDepth(depth);
+        if (endgame >= 0) c.setEndgameEmpties(endgame);
+        if (patterns != null) c.setPatternFile(patterns);
+        if (ponder != OthelloAlphaBetaAI.PONDER_OFF) c.setPondering(ponder);
+        if (book != null) c.setBookFile(book);
+        if (stats != null) {
+            try {
+                c.setStatsLog(stats);
+            } catch (IOException e) {
+                printUsage("Cannot open the stats log " + stats + ": " + e.getMessage());
+            }
+        }
         c.run();
     }
 
@@ -666,6 +790,13 @@ public class GameClient {
         System.err.println("         --ai=true/false [default=true]");
         System.err.println("         [+/-]ai  -- Use or don't use AI");
         System.err.println("         --level=X   The level of AI to use 0, 1, ... (0=human, >1=Some AI depending on game");
+        System.err.println("         --threads=X The number of threads the AI searches with [default 1, all processors for level 2 OTHELLO]");
+        System.err.println("         --depth=X   Search every move to depth X - deterministic, so games can be replayed [default uses the clock]");
+        System.err.println("         --endgame=X Solve the endgame exactly from X empty squares, 0=never (at most " + OthelloEndgame.MAX_EMPTIES + ") [default " + OthelloEndgame.DEFAULT_EMPTIES + "]");
+        System.err.println("         --patterns=FILE  Evaluate with the pattern tables in FILE (see cad.ai.game.OthelloPatterns)");
+        System.err.println("         --book=FILE Play from the opening book in FILE, none=no book [default " + OthelloAlphaBetaAI.DEFAULT_BOOK_FILE + " if it exists]");
+        System.err.println("         --ponder=X  Think on the opponent's time: off, predicted (the expected reply) or all (every reply) [default off]");
+        System.err.println("         --stats=FILE  Log the AI's search statistics per move and per game to FILE (- for the screen)");
         System.err.println("         --verbose=X           -- 0=quiet, >0=Output more stuff.");
         if (message != null) System.err.println("       " + message);
         System.exit(1);
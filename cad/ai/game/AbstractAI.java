@@ -17,6 +17,12 @@ package cad.ai.game;
  *   AI system.
  ***********************************************************/
 public abstract class AbstractAI implements AI {
+    /**
+     * Where the AIs keep their learned records by default
+     * (set with -Dcad.ai.data=DIR, relative to the directory the program runs in)
+     **/
+    public static final String DATA_DIR = System.getProperty("cad.ai.data", "cad/ai/game/");
+
     /**
      * Inform AI who the winner is
      *   result is either (H)ome win, (A)way win, (T)ie
@@ -0,0 +1,486 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * EloMatch:
+ *    Plays two AI configurations against each other until a sequential
+ *    probability ratio test (SPRT) decides whether the first is stronger.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***********************************************************
+ * A regression test for AI changes: is configuration A stronger than B?
+ *   The games are played in pairs from the same opening (a few seeded random
+ *   moves), A being Home in one game and Away in the other, so a lopsided
+ *   opening favours neither side.  Several pairs are played at once, each thread
+ *   with its own pair of AIs, and only the Game and AI interfaces are used - so
+ *   any AI can be tested (see createAI for the configurations).
+ *
+ *   After every pair the generalized SPRT compares
+ *     H0: A is elo0 stronger than B    and    H1: A is elo1 stronger than B
+ *   using the scores of the pairs (0, 1/4, ..., 1 for A), and stops as soon as the
+ *   log likelihood ratio crosses one of its bounds - or after the maximum number
+ *   of pairs with no verdict.  The Elo difference is reported with a 95% interval.
+ ***********************************************************/
+public class EloMatch {
+    public static enum GameType { NIM, TTT, OTHELLO_MICRO, OTHELLO_MINI, OTHELLO };
+    private static final GameType DEFAULT_GAME = GameType.OTHELLO;
+    public static final int DEFAULT_PAIRS = 500;
+    public static final long DEFAULT_SEED = 350;
+    public static final double DEFAULT_ELO0 = 0.0;
+    public static final double DEFAULT_ELO1 = 10.0;
+    public static final double DEFAULT_ALPHA = 0.05;   // Chance of accepting H1 when H0 is true
+    public static final double DEFAULT_BETA = 0.05;    // ... and of accepting H0 when H1 is true
+    public static final int DEFAULT_REPORT = 10;
+
+    private GameType gameType;
+    private String specA, specB;  // The AI configurations (see createAI)
+    private int maxPairs;
+    private int threads;
+    private int randomPlies;
+    private long seed;
+    private double elo0 = DEFAULT_ELO0, elo1 = DEFAULT_ELO1;
+    private double lower, upper;  // Bounds on the log likelihood ratio
+    private int report = DEFAULT_REPORT;  // Print the standings every this many pairs (0 = never)
+    private int verbose;
+    private AtomicInteger nextPair = new AtomicInteger();
+    private volatile boolean decided = false;
+
+    // Standings (A's point of view)
+    private int pairs;
+    private int[] pairCounts = new int[5];  // Pairs by A's score in half points: 0, 1/2, 1, 3/2, 2
+    private int wins, draws, losses, forfeitsA, forfeitsB;
+    private double llr;
+
+    /**
+     * @param specA The configuration being tested (see createAI)
+     * @param specB The configuration it is compared with
+     * @param randomPlies Random moves to start each opening with (-1 = the default for the game)
+     **/
+    public EloMatch(GameType gameType, String specA, String specB, int maxPairs, int threads, int randomPlies, long seed, int verbose) {
+        this.gameType = gameType;
+        this.specA = specA;
+        this.specB = specB;
+        this.maxPairs = maxPairs;
+        this.threads = Math.max(1, threads);
+        this.randomPlies = (randomPlies >= 0) ? randomPlies :
+            (gameType == GameType.NIM) ? 0 : (gameType == GameType.TTT) ? 2 : 6;
+        this.seed = seed;
+        this.verbose = verbose;
+        setBounds(DEFAULT_ELO0, DEFAULT_ELO1, DEFAULT_ALPHA, DEFAULT_BETA);
+    }
+
+    /**
+     * The two hypotheses (Elo differences) and the error rates allowed.
+     **/
+    public void setBounds(double elo0, double elo1, double alpha, double beta) {
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        lower = Math.log(beta / (1 - alpha));
+        upper = Math.log((1 - beta) / alpha);
+    }
+
+    /** Print the standings every this many pairs (0 = only at the end) **/
+    public void setReport(int report) { this.report = report; }
+
+    /**
+     * Create an AI from a configuration "type[:option=value,...]".
+     *   Othello: alphabeta  options depth=N (fixed depth search), time=MS (per game, when no depth),
+     *                       eval=classic|incremental|pattern, weights=FILE, patterns=FILE,
+     *                       threads=N, tt=MB, endgame=EMPTIES, book=FILE|none
+     *            simple     (OthelloAI)
+     *   TTT:     ttt        options records=FILE (read, never written)
+     *   Nim:     nim
+     *   Any other AI by its class name (e.g. cad.ai.game.NimAI) - it needs a constructor with no arguments.
+     * @throws IllegalArgumentException if the configuration is not recognized
+     **/
+    public static AI createAI(String spec) {
+        String[] parts = spec.split(":", 2);
+        String type = parts[0].trim();
+        List<String[]> options = new ArrayList<String[]>();
+        if (parts.length > 1)
+            for (String option : parts[1].split(",")) {
+                String[] kv = option.split("=", 2);
+                if (kv.length != 2) throw new IllegalArgumentException("Option is not name=value: " + option);
+                options.add(new String[] {kv[0].trim(), kv[1].trim()});
+            }
+
+        switch (type.toLowerCase()) {
+        case "alphabeta": {
+            int megabytes = TranspositionTable.DEFAULT_MEGABYTES;
+            for (String[] kv : options)
+                if (kv[0].equals("tt")) megabytes = Integer.parseInt(kv[1]);
+            OthelloAlphaBetaAI ai = new OthelloAlphaBetaAI(null, megabytes);
+            ai.setVerbose(0);
+            for (String[] kv : options) {
+                switch (kv[0]) {
+                case "tt": break;
+                case "depth": ai.setFixedDepth(Integer.parseInt(kv[1])); break;
+                case "time": ai.setTimeControl(Long.parseLong(kv[1]), 0); break;
+                case "threads": ai.setThreads(Integer.parseInt(kv[1])); break;
+                case "endgame": ai.setEndgameEmpties(Integer.parseInt(kv[1])); break;
+                case "weights":
+                    if (!ai.loadWeights(kv[1])) throw new IllegalArgumentException("Could not load weights " + kv[1]);
+                    break;
+                case "patterns":
+                    if (!ai.loadPatterns(kv[1])) throw new IllegalArgumentException("Could not load patterns " + kv[1]);
+                    break;
+                case "book":
+                    if (kv[1].equals("none")) ai.setBook(null);
+                    else if (!ai.loadBook(kv[1])) throw new IllegalArgumentException("Could not load book " + kv[1]);
+                    break;
+                case "eval":
+                    switch (kv[1].toLowerCase()) {
+                    case "classic": ai.setEvalMode(OthelloAlphaBetaAI.EVAL_CLASSIC); break;
+                    case "incremental": ai.setEvalMode(OthelloAlphaBetaAI.EVAL_INCREMENTAL); break;
+                    case "pattern": ai.setEvalMode(OthelloAlphaBetaAI.EVAL_PATTERN); break;
+                    default: throw new IllegalArgumentException("Unrecognized eval: " + kv[1]);
+                    }
+                    break;
+                default: throw new IllegalArgumentException("Unrecognized alphabeta option: " + kv[0]);
+                }
+            }
+            return ai;
+        }
+        case "ttt": {
+            String records = null;
+            for (String[] kv : options) {
+                if (kv[0].equals("records")) records = kv[1];
+                else throw new IllegalArgumentException("Unrecognized ttt option: " + kv[0]);
+            }
+            TicTacToeAI ai = new TicTacToeAI(records);
+            ai.setSaveOnEnd(false);
+            return ai;
+        }
+        }
+
+        if (!options.isEmpty()) throw new IllegalArgumentException(type + " has no options");
+        switch (type.toLowerCase()) {
+        case "simple": return new OthelloAI();
+        case "nim": return new NimAI();
+        }
+        try {
+            return (AI) Class.forName(type).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Unrecognized AI: " + type);
+        }
+    }
+
+    /**
+     * Create a game: the server's (player -1) or one for a player and its AI.
+     **/
+    private Game createGame(int player, AI ai) {
+        boolean server = player < 0;
+        switch (gameType) {
+        case NIM: return new NimGame(player, null, ai, server, 0);
+        case TTT: return new TicTacToeGame(player, null, ai, server, 0);
+        case OTHELLO_MICRO: return new OthelloGame(player, null, ai, server, 0, 4, 4);
+        case OTHELLO_MINI: return new OthelloGame(player, null, ai, server, 0, 6, 6);
+        default: return new OthelloGame(player, null, ai, server, 0, 8, 8);
+        }
+    }
+
+    /**
+     * A random legal move for whoever's turn it is (in the move format of the game).
+     **/
+    private static String randomMove(Game game, Random ran) {
+        int turn = game.getTurn();
+        if (game instanceof OthelloGame) {
+            ArrayList<OthelloGame.Action> actions = ((OthelloGame) game).getActions(turn);
+            return actions.get(ran.nextInt(actions.size())).toString();
+        } else if (game instanceof TicTacToeGame) {
+            char[] board = (char[]) game.getStateAsObject();
+            int slot;
+            do slot = ran.nextInt(board.length); while (board[slot] != ' ');
+            return "" + slot;
+        } else {
+            int[] sticks = (int[]) game.getStateAsObject();
+            int row;
+            do row = ran.nextInt(sticks.length); while (sticks[row] == 0);
+            return row + "," + (1 + ran.nextInt(sticks[row]));
+        }
+    }
+
+    /**
+     * The opening for pair i - the state after the random moves.
+     **/
+    private String opening(int index) {
+        Random ran = new Random(seed + index);
+        while (true) {
+            Game game = createGame(-1, null);
+            for (int ply = 0; ply < randomPlies && !game.isDone(); ply++)
+                game.processMove(game.getTurn(), randomMove(game, ran));
+            if (!game.isDone()) return game.getState(true);
+        }
+    }
+
+    /***********************************************************
+     * One thread: its own A and B, playing pairs until the test is decided.
+     ***********************************************************/
+    private class Worker implements Callable<Void> {
+        private AI a = createAI(specA);
+        private AI b = createAI(specB);
+
+        public Void call() {
+            try {
+                for (int i = nextPair.getAndIncrement(); i < maxPairs && !decided; i = nextPair.getAndIncrement()) {
+                    String start = opening(i);
+                    double first = play(start, a, b);       // A is Home
+                    double second = 1 - play(start, b, a);  // A is Away
+                    finished(i, first, second);
+                }
+            } finally {
+                a.end();
+                b.end();
+            }
+            return null;
+        }
+
+        /**
+         * Play one game from the given state.
+         * @return Home's score (1 = win, 1/2 = tie, 0 = loss)
+         **/
+        private double play(String start, AI home, AI away) {
+            Game server = createGame(-1, null);
+            server.updateState(start);
+            Game[] side = { createGame(0, home), createGame(1, away) };
+            AI[] ai = { home, away };
+            int forfeit = -1;
+            while (!server.isDone()) {
+                int t = server.getTurn();
+                side[t].updateState(server.getState(true));
+                String move = ai[t].computeMove();
+                String response = server.processMove(t, move);
+                if (response.startsWith("ERROR")) { forfeit = t; break; }  // The move was refused (as Match.process)
+            }
+
+            int winner = (forfeit >= 0) ? 1 - forfeit : server.getWinner();
+            char r = winner == 0 ? 'H' : winner == 1 ? 'A' : 'T';
+            home.postWinner(r);
+            away.postWinner(r);
+            if (forfeit >= 0) forfeited(ai[forfeit] == a);
+            return winner == 0 ? 1.0 : winner == 1 ? 0.0 : 0.5;
+        }
+    }
+
+    private synchronized void forfeited(boolean byA) {
+        if (byA) forfeitsA++; else forfeitsB++;
+    }
+
+    /**
+     * Record a finished pair and check whether the test is decided.
+     * @param first A's score (1, 1/2 or 0) as Home
+     * @param second ... and as Away
+     **/
+    private synchronized void finished(int index, double first, double second) {
+        if (decided) return;  // Played while the verdict was being reached - ignore it
+        double score = first + second;
+        pairs++;
+        pairCounts[(int) Math.round(score * 2)]++;
+        gameResult(first);
+        gameResult(second);
+        llr = logLikelihoodRatio();
+        if (verbose > 0) System.out.println("Pair " + index + ": A scored " + score + "/2");
+        if (report > 0 && pairs % report == 0) System.out.println(standings());
+        if (llr >= upper || llr <= lower) decided = true;
+    }
+
+    private void gameResult(double score) {
+        if (score == 1.0) wins++;
+        else if (score == 0.0) losses++;
+        else draws++;
+    }
+
+    /** Mean score (0..1) of A per pair **/
+    private double mean() {
+        double total = 0;
+        for (int k = 0; k < pairCounts.length; k++) total += pairCounts[k] * k / 4.0;
+        return total / pairs;
+    }
+
+    /** Variance of A's score per pair **/
+    private double variance() {
+        double mu = mean(), total = 0;
+        for (int k = 0; k < pairCounts.length; k++) total += pairCounts[k] * (k / 4.0 - mu) * (k / 4.0 - mu);
+        return total / pairs;
+    }
+
+    /** Expected score for an Elo difference **/
+    public static double score(double elo) { return 1.0 / (1.0 + Math.pow(10.0, -elo / 400.0)); }
+
+    /** Elo difference for an expected score **/
+    public static double elo(double score) {
+        score = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+        return -400.0 * Math.log10(1.0 / score - 1.0);
+    }
+
+    /**
+     * The generalized SPRT log likelihood ratio of H1 to H0 (normal approximation).
+     **/
+    private double logLikelihoodRatio() {
+        double var = variance();
+        if (var <= 0) return 0;  // Every pair the same so far - no information yet
+        double s0 = score(elo0), s1 = score(elo1);
+        return pairs * (s1 - s0) * (2 * mean() - s0 - s1) / (2 * var);
+    }
+
+    /** One line summary of the match so far **/
+    private synchronized String standings() {
+        double mu = mean(), margin = 1.96 * Math.sqrt(variance() / pairs);
+        double e = elo(mu);
+        return String.format("Pairs %d: A +%d =%d -%d  Elo %+.1f [%+.1f, %+.1f]  LLR %.2f [%.2f, %.2f]",
+                             pairs, wins, draws, losses, e, elo(mu - margin), elo(mu + margin), llr, lower, upper);
+    }
+
+    /**
+     * Play pairs until the test is decided (or maxPairs have been played).
+     * @return 1 if H1 was accepted (A is stronger), -1 if H0 was, 0 if there is no verdict
+     **/
+    public int run() throws InterruptedException, ExecutionException {
+        long start = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> workers = new ArrayList<Future<Void>>();
+        try {
+            for (int i = 0; i < threads; i++) workers.add(pool.submit(new Worker()));
+            for (Future<Void> w : workers) w.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double seconds = Math.max(1, System.currentTimeMillis() - start) / 1000.0;
+        System.out.println(String.format("%s: A = %s, B = %s (%.1f s)", gameType, specA, specB, seconds));
+        if (pairs == 0) return 0;
+        System.out.println(standings());
+        System.out.println("Pairs by A's score (0, 1/2, 1, 3/2, 2): " + pairCounts[0] + ", " + pairCounts[1] + ", " +
+                           pairCounts[2] + ", " + pairCounts[3] + ", " + pairCounts[4]);
+        if (forfeitsA + forfeitsB > 0)
+            System.out.println("Forfeits (illegal moves): A " + forfeitsA + ", B " + forfeitsB);
+        if (llr >= upper) {
+            System.out.println("H1 accepted: A is stronger (Elo " + elo1 + ")");
+            return 1;
+        } else if (llr <= lower) {
+            System.out.println("H0 accepted: A is not stronger (Elo " + elo0 + ")");
+            return -1;
+        }
+        System.out.println("No verdict after " + pairs + " pairs");
+        return 0;
+    }
+
+    private static void error(String message) { System.err.println("ERROR: " + message); }
+
+    /**
+     * The main entry point.
+     **/
+    public static void main(String[] args) {
+        GameType gameType = DEFAULT_GAME;
+        String specA = null, specB = null;
+        int maxPairs = DEFAULT_PAIRS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int randomPlies = -1;
+        long seed = DEFAULT_SEED;
+        double elo0 = DEFAULT_ELO0, elo1 = DEFAULT_ELO1, alpha = DEFAULT_ALPHA, beta = DEFAULT_BETA;
+        int report = DEFAULT_REPORT;
+        int verbose = 0;
+
+        // Parse the arguments
+        for (String arg: args) {
+            try {
+                String[] params = arg.split("=",2);
+                switch (params[0]) {
+                case "--help": printUsage(null); break;
+                case "--game":
+                    switch (params[1].toUpperCase()) {
+                    case "NIM": gameType = GameType.NIM; break;
+                    case "TTT": gameType = GameType.TTT; break;
+                    case "OTHELLO_MICRO":
+                    case "MICRO": gameType = GameType.OTHELLO_MICRO; break;
+                    case "OTHELLO_MINI":
+                    case "MINI": gameType = GameType.OTHELLO_MINI; break;
+                    case "OTHELLO": gameType = GameType.OTHELLO; break;
+                    default: printUsage("Unrecognized game option: " + params[1]);
+                    }
+                    break;
+                case "--a": specA = params[1]; break;
+                case "--b": specB = params[1]; break;
+                case "--pairs": maxPairs = Integer.parseInt(params[1]); break;
+                case "--threads": threads = Integer.parseInt(params[1]); break;
+                case "--random": randomPlies = Integer.parseInt(params[1]); break;
+                case "--seed": seed = Long.parseLong(params[1]); break;
+                case "--elo0": elo0 = Double.parseDouble(params[1]); break;
+                case "--elo1": elo1 = Double.parseDouble(params[1]); break;
+                case "--alpha": alpha = Double.parseDouble(params[1]); break;
+                case "--beta": beta = Double.parseDouble(params[1]); break;
+                case "--report": report = Integer.parseInt(params[1]); break;
+                case "--verbose": verbose = Integer.parseInt(params[1]); break;
+                default:
+                    printUsage("Unrecognized parameter: " + arg);
+                }
+            } catch (Exception e) {
+                printUsage("Error processing parameter: " + arg);
+            }
+        }
+        String defaultSpec = (gameType == GameType.NIM) ? "nim" : (gameType == GameType.TTT) ? "ttt" : "alphabeta:depth=4";
+        if (specA == null) specA = defaultSpec;
+        if (specB == null) specB = defaultSpec;
+        if (elo1 <= elo0) printUsage("Error: elo1 must be bigger than elo0");
+
+        // Check the configurations before any threads start
+        for (String spec : new String[] {specA, specB}) {
+            try {
+                createAI(spec).end();
+            } catch (RuntimeException e) {
+                printUsage("Error in AI configuration " + spec + ": " + e.getMessage());
+            }
+        }
+
+        EloMatch match = new EloMatch(gameType, specA, specB, maxPairs, threads, randomPlies, seed, verbose);
+        match.setBounds(elo0, elo1, alpha, beta);
+        match.setReport(report);
+        try {
+            match.run();
+        } catch (Exception e) {
+            error("Match failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Print Usage message and exit
+     **/
+    public static void printUsage(String message) {
+        System.err.println("Usage: java cad.ai.game.EloMatch [params]");
+        System.err.println("       Where params are:");
+        System.err.println("         --help                -- Print this usage message");
+        System.err.println("         --game=XXX            -- NIM, TTT, OTHELLO_MICRO, OTHELLO_MINI, OTHELLO (default " + DEFAULT_GAME + ").");
+        System.err.println("         --a=AI                -- The configuration being tested, e.g. alphabeta:depth=4,eval=pattern,patterns=p.bin");
+        System.err.println("         --b=AI                -- The configuration it is compared with (e.g. the current one).");
+        System.err.println("                                  AI is alphabeta, simple (Othello), ttt, nim or a class name;");
+        System.err.println("                                  alphabeta options: depth, time, eval, weights, patterns, threads, tt, endgame, book;");
+        System.err.println("                                  ttt options: records.  (default alphabeta:depth=4, ttt or nim)");
+        System.err.println("         --pairs=X             -- Most pairs of games to play (default " + DEFAULT_PAIRS + ").");
+        System.err.println("         --threads=X           -- Pairs played at once (default is the number of processors).");
+        System.err.println("                                  Use fewer with time-based AIs so they get the time they expect.");
+        System.err.println("         --random=X            -- Random moves in each opening (default 6 Othello, 2 TTT, 0 NIM).");
+        System.err.println("         --seed=X              -- Seed for the openings (default " + DEFAULT_SEED + ").");
+        System.err.println("         --elo0=X --elo1=X     -- The SPRT hypotheses: A is elo0 / elo1 stronger (default " +
+                           DEFAULT_ELO0 + " / " + DEFAULT_ELO1 + ").");
+        System.err.println("         --alpha=X --beta=X    -- The SPRT error rates (default " + DEFAULT_ALPHA + " / " + DEFAULT_BETA + ").");
+        System.err.println("         --report=X            -- Print the standings every X pairs (default " + DEFAULT_REPORT + ", 0=never).");
+        System.err.println("         --verbose=X           -- 0=quiet, >0=Print every pair.");
+        if (message != null)
+            System.err.println("       " + message);
+        System.exit(1);
+    }
+}
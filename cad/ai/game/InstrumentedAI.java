@@ -0,0 +1,32 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * InstrumentedAI:
+ *    An AI that reports what its searches did.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+/***********************************************************
+ * An AI whose searches can be measured (see SearchStats).
+ *   GameClient and PlayGame log these per move and per game when asked to
+ *   (--stats), for any AI that implements this.
+ ***********************************************************/
+public interface InstrumentedAI extends AI {
+    /**
+     * What the search for the last move did (null if the move was made without one,
+     * e.g. the only move available)
+     **/
+    public SearchStats getMoveStats();
+
+    /**
+     * Totals of the searches of the current game (started again when a new game is attached)
+     **/
+    public SearchStats getGameStats();
+}
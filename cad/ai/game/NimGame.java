@@ -35,13 +35,16 @@ public class NimGame implements Game {
     private int winner = -3;
     private BufferedReader in; // The input to use (when not in AI mode)
     private NimAI ai;   // AI system
+    private int verbose;  // 0=quiet, >0=display the state as it changes
 
     /** Constructors **/
     public NimGame() { this(-1, null, null); }
     public NimGame(int player, BufferedReader in) { this(player, in, null); }
     public NimGame(int player, BufferedReader in, AI ai) { this(player, in, ai, player == -1); }
-    public NimGame(int player, BufferedReader in, AI ai, boolean createFlag) {
+    public NimGame(int player, BufferedReader in, AI ai, boolean createFlag) { this(player, in, ai, createFlag, 1); }
+    public NimGame(int player, BufferedReader in, AI ai, boolean createFlag, int verbose) {
         this.player = player;
+        this.verbose = verbose;
         this.in = in;
         this.ai = (NimAI) ai;
         this.changed = true;
@@ -111,22 +114,29 @@ public class NimGame implements Game {
             String[] pieces = state.split(",");  // Break up the state into pieces
             this.turn = Integer.parseInt(pieces[0]);     // Whose turn is it
             int numRows = Integer.parseInt(pieces[1]);   // How many rows are there?
-            if (this.sticks == null)
+            if (this.sticks == null || this.sticks.length != numRows)
+                // Not the same number of rows as we had.  Make new ones.
                 this.sticks = new int[numRows];
-            else if (this.sticks.length != numRows) {
-                System.err.println("Number of rows does not MATCH!");
-                return;
-            }
             // How many sticks left in each row
             for (int i = 0; i < numRows; i++)
                 this.sticks[i] = Integer.parseInt(pieces[i+2]);
 	    
-            displayState();
+            if (verbose > 0) displayState();
         } catch (NumberFormatException e) {
             System.err.println("There was an error in the state that was sent. " + state);
         }
     }
 
+    /**
+     * Update the state to the given rows of sticks with turn to move.  Copies contents.
+     **/
+    public synchronized void updateState(int turn, int[] newSticks) {
+        if (sticks == null || sticks.length != newSticks.length) sticks = new int[newSticks.length];
+        for (int i = 0; i < sticks.length; i++)
+            sticks[i] = newSticks[i];
+        this.turn = turn;
+    }
+
     /**
      * Display the current state.  We'll use a text-based version here.
      **/
@@ -173,7 +183,7 @@ public class NimGame implements Game {
         } else {
             // Get the move from the AI
             String move = ai.computeMove();
-            System.out.println("AI chose to move " + move);
+            if (verbose > 0) System.out.println("AI chose to move " + move);
             turn = -1;  // Avoid asking again until we know whose turn it is
             return("@GAME:MOVE:"+move);
         }
@@ -201,13 +211,10 @@ public class NimGame implements Game {
                     return "ERROR:You must take a positive number of sticks.";
                 if (sticks[row] < take)
                     return "ERROR:That row does not have that many sticks.";
-                sticks[row] -= take;
-                turn ^= 1;  // Switch turn from 0 to 1 or 1 to 0
-                changed = true;
-                if (sticks[row] == 0 && isDoneCheck()) {
-                    winner = (turn^1);
+                applyMove(p, row, take);
+                if (done)
                     return "MESSAGE:" + (winner == 0 ? "Home" : "Away") + " won!";
-                } else
+                else
                     return "MESSAGE:Took " + take + " sticks from row " + row + ".";
             } catch (Exception e) {
                 return "ERROR:Could not understand your move.  Please use Row,Take as integral values.";
@@ -215,6 +222,20 @@ public class NimGame implements Game {
         }
     }   
 
+    /**
+     * Player p takes sticks from row - the typed version of processMove(p, String).
+     * @return false (and nothing changes) if it isn't p's turn or the row doesn't have that many
+     **/
+    public boolean applyMove(int p, int row, int take) {
+        if (p != turn || done || row < 0 || row >= sticks.length || take <= 0 || sticks[row] < take)
+            return false;
+        sticks[row] -= take;
+        turn ^= 1;  // Switch turn from 0 to 1 or 1 to 0
+        changed = true;
+        if (sticks[row] == 0 && isDoneCheck()) winner = (turn^1);
+        return true;
+    }
+
     /**
      * Is it current user's turn?  Based on state information...
      **/
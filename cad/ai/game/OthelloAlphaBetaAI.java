@@ -16,6 +16,7 @@
 package cad.ai.game;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -27,11 +28,11 @@ import java.lang.*;
 *   the move selection is made here - either via user or an attached
 *   AI system.
 ***********************************************************/
-public class OthelloAlphaBetaAI extends AbstractAI {
+public class OthelloAlphaBetaAI extends AbstractAI implements InstrumentedAI, PonderingAI {
   public OthelloGame game;  // The game that this AI system is playing
   protected Random ran;
   public OthelloGame practiceGame;
-  protected int maxDepth = 4;
+  protected int maxDepth = 60;  // Deepest iteration to try (the clock normally stops the search well before)
   protected String fileName; 
   private Pattern r;
   private Matcher m;
@@ -48,28 +49,77 @@ public class OthelloAlphaBetaAI extends AbstractAI {
   protected Map <String, Record> hmap;
   protected Stack <String> setOfMoves;
   protected int maxTurn = 5; 
-  int cornerHeuristic = 0;
-  int moblityHeuristic = 0;
-  int stabiltyHeuristic = 0;
-  int coinParityHeuristic = 0;
   private String pattern = "([0-1])#([0-7][a-h])#([0-9]+)-([0-9]+)-([0-9]+)#([0-9]+.[0-9]+(E-?[0-9]+)?)";
   protected BufferedReader reader;
   private  int[][] directions = new int[][]{{-1,-1}, {-1,0}, {-1,1},  {0,1}, {1,1},  {1,0},  {1,-1},  {0, -1}};
   private int turnNumber = 0;
+  protected TranspositionTable tt;  // Kept for the whole game so each search reuses the last one's work
+  protected TimeManager timeManager; // Our share of the game clock
+  protected int threads = 1;         // Search threads (the main search plus threads-1 helpers)
+  protected int verbose = 1;         // 0 = quiet (e.g. self-play), >0 = output more stuff
+  private OthelloSearch mainSearch;  // Searches on practiceGame and decides when to stop
+  private OthelloSearch[] helpers;   // Lazy SMP helpers - they only share the transposition table
+  private ExecutorService helperPool;
+  private SearchStats moveStats;     // What the last search did (all threads) - null if there wasn't one
+  private SearchStats gameStats = new SearchStats();  // ... and all the searches of this game
+  protected int fixedDepth = 0;      // > 0: deterministic search to this depth instead of using the clock
+  private OthelloParallelSearch ybwc; // The deterministic (Young Brothers Wait) search
+  protected int endgameEmpties = OthelloEndgame.DEFAULT_EMPTIES; // Solve (win/loss/draw) from this many empties
+  protected int exactEmpties = OthelloEndgame.DEFAULT_EMPTIES - 4; // ... and for the exact score from this many
+  private OthelloEndgame endgame = new OthelloEndgame();
+  public static final int PONDER_OFF = 0;        // Don't think on the opponent's time
+  public static final int PONDER_PREDICTED = 1;  // Search our answer to the reply the last search expects (every reply if it has no guess)
+  public static final int PONDER_ALL = 2;        // Search our answer to every reply, one ply deeper at a time
+  protected int ponderMode = PONDER_OFF;
+  private OthelloSearch ponderSearch;            // Its own board but the same transposition table (null until needed)
+  private ExecutorService ponderPool;
+  private Future<?> pondering;                   // The running ponder task (null = none)
+  private volatile boolean ponderStop;
+  private long ponderBase;                       // Key of the position being pondered (0 = none)
+  private Map<Long, PonderResult> ponderResults = new ConcurrentHashMap<Long, PonderResult>(); // Keyed by the position after the reply
+  private int predictedReply = -1;               // The opponent's reply in the last search's PV (-1 = no guess)
+  private int lastSearchDepth = Integer.MAX_VALUE; // Depth our own last search reached - a ponder result this deep is played at once
+  public static final int EVAL_CLASSIC = 0;      // evalBoard: everything recounted from the char[][] board
+  public static final int EVAL_INCREMENTAL = 1;  // evaluate: features kept up to date by OthelloGame
+  public static final int EVAL_PATTERN = 2;      // OthelloPatterns tables (plus mobility)
+  protected int evalMode = EVAL_INCREMENTAL;
+  protected OthelloPatterns patterns;            // Pattern tables (null = not loaded)
+  // Multipliers of the evaluation terms (see evaluate)
+  public static final int W_PARITY = 0, W_CORNERS = 1, W_MOBILITY = 2, W_FRONTIER = 3, W_SQUARES = 4;
+  protected int[] evalWeights = {25, 30, 25, 15, 10};
+  public static final String DEFAULT_WEIGHTS_FILE = DATA_DIR + "othelloWeights.txt"; // Tuned weights (see OthelloTuner), if present
+  public static final String DEFAULT_BOOK_FILE = DATA_DIR + "othelloBook.bin"; // Opening book (see OthelloBook), if present
+  protected OthelloBook book;                    // Consulted before searching (null = no book)
+  private static final String[] WEIGHT_NAMES = {"parity", "corners", "mobility", "frontier", "squares"};
 
 
   public OthelloAlphaBetaAI()
   {
-  	this("C:/Ai_Repo/SimpleAI/cad/ai/game/firstMovesOthello.txt");
+  	this(DATA_DIR + "firstMovesOthello.txt");
   }
 
 
   public OthelloAlphaBetaAI(String fileName) 
+  {
+  	this(fileName, TranspositionTable.DEFAULT_MEGABYTES);
+  }
+
+
+  /**
+  * @param ttMegabytes Memory budget for the transposition table
+  **/
+  public OthelloAlphaBetaAI(String fileName, int ttMegabytes) 
   {
   	this.fileName = fileName;
+  	this.tt = new TranspositionTable(ttMegabytes);
+  	this.timeManager = new TimeManager();
+  	if (new File(DEFAULT_WEIGHTS_FILE).exists()) loadWeights(DEFAULT_WEIGHTS_FILE);
+  	if (new File(DEFAULT_BOOK_FILE).exists()) loadBook(DEFAULT_BOOK_FILE);
   	game = null;
   	ran = new Random();
-  	practiceGame = new OthelloGame(-1, null, null, false, 0);
+  	practiceGame = newPracticeGame();
+  	mainSearch = new OthelloSearch(this, tt, practiceGame);
+  	helpers = new OthelloSearch[0];
   	hmap = new HashMap<String, Record>();
   	setOfMoves = new Stack<>();
   	this.r = Pattern.compile(this.pattern);
@@ -80,6 +130,8 @@ public class OthelloAlphaBetaAI extends AbstractAI {
   	double score;
   	String line;
 
+  	if (this.fileName == null) return;  // No record file (e.g. benchmarking)
+
   	//Parse the records from the trained record file and put them on the hashmap
   	try {
   		reader = new BufferedReader(new FileReader(this.fileName));
@@ -95,7 +147,6 @@ public class OthelloAlphaBetaAI extends AbstractAI {
   				score = Double.valueOf(strscore);
   				Record r = new Record(wins,losses,ties,score);
   				hmap.put(player+"#"+action,r);
-  				System.out.println(player+""+action+""+wins+""+losses+""+ties+""+strscore);
   			}
   			else {
   				System.out.println("oh dear.");
@@ -110,8 +161,13 @@ public class OthelloAlphaBetaAI extends AbstractAI {
   }
 
   public synchronized void attachGame(Game g) {
+  	stopPondering();
+  	predictedReply = -1;
   	game = (OthelloGame) g;
-  	System.out.println("Alpha beta ai created as player " + game.getPlayer());
+  	tt.clear();  // Scores are stored from this game's player's point of view
+  	timeManager.newGame();
+  	gameStats = new SearchStats();
+  	if (verbose > 0) System.out.println("Alpha beta ai created as player " + game.getPlayer());
   }
 
     /**
@@ -124,41 +180,62 @@ public class OthelloAlphaBetaAI extends AbstractAI {
     		return "0a";
     	}
     	char[][] board = (char[][]) game.getStateAsObject();
-    	OthelloGame.Action bestAction = null;
-    	int bestScore = Integer.MIN_VALUE;
       // First get the list of possible moves
       int player = game.getPlayer(); // Which player are we?
-      char piece;
-      int score;
-      evalBoard(player, board);
+
       ArrayList<OthelloGame.Action> actions = game.getActions(player);
-      for(OthelloGame.Action a : actions)
+      OthelloGame.Action bestAction = actions.get(0);
+      moveStats = null;
+      stopPondering();
+      predictedReply = -1;
+      if (actions.size() > 1)
       {
-      	char [][] copyBoard = result(board, a, game.getPlayer());
-      	switch(copyBoard.length)
+      	long start = System.currentTimeMillis();
+      	int empties = countPieces(board)[2];
+      	timeManager.startMove((empties + 1) / 2);
+      	int move = (book != null) ? book.chooseMove(board, player) : -1;
+      	PonderResult pondered = (fixedDepth == 0) ? ponderResults.get(OthelloGame.computeHash(board, player)) : null;
+      	if (move >= 0)
       	{
-      		case 4:
-      		score = minValue(copyBoard, Integer.MIN_VALUE, Integer.MAX_VALUE, this.maxDepth*2);
-      		if (score > bestScore)
+      		if (verbose > 0)
       		{
-      			bestAction = a;
-      			bestScore = score;
+      			Record r = book.probeMove(board, player, move);
+      			System.out.println("Book move " + (move / board[0].length) + (char) ('a' + move % board[0].length) +
+      				": " + r.ReturnRecord() + " score " + r.ReturnScore());
       		}
-      		case 6:
-      		score = minValue(copyBoard, Integer.MIN_VALUE, Integer.MAX_VALUE, this.maxDepth*3);
-      		if (score > bestScore)
+      	}
+      	else if (pondered != null && pondered.stats.getMaxDepth() >= Math.min(lastSearchDepth, empties))
+      	{
+      		// Searched on the opponent's time at least as deep as we would get now
+      		move = pondered.move;
+      		moveStats = pondered.stats;
+      		predictedReply = pondered.reply;
+      		if (verbose > 0) System.out.println("Ponder hit: " + moveStats.getMaxDepth() + " ply searched on the opponent's time");
+      	}
+      	else
+      	{
+      		SearchStats solver = null;
+      		if (fixedDepth == 0 && empties <= endgameEmpties && game.isBitboard())
       		{
-      			bestAction = a;
-      			bestScore = score;
+      			move = solveEndgame(player, empties);
+      			solver = moveStats;
       		}
-      		case 8:
-      		score = minValue(copyBoard, Integer.MIN_VALUE, Integer.MAX_VALUE, 7);
-      		if (score > bestScore)
+      		if (move < 0)
       		{
-      			bestAction = a;
-      			bestScore = score;
+      			move = (fixedDepth > 0) ?
+      				searchDeterministic(player, board, actions, Math.min(fixedDepth, empties)) :
+      				search(player, board, actions, Math.min(maxDepth, empties), timeManager);
+      			if (fixedDepth == 0 && mainSearch.getPrincipalMove(0) == move)
+      				predictedReply = mainSearch.getPrincipalMove(1);
+      			if (solver != null) { solver.add(moveStats); moveStats = solver; }  // The solver's work counts too
       		}
+      		moveStats.setTime(System.currentTimeMillis() - start);
+      		lastSearchDepth = moveStats.getMaxDepth();
       	}
+      	timeManager.endMove();
+      	if (moveStats != null) gameStats.add(moveStats);  // null for a book move
+      	for (OthelloGame.Action a : actions)
+      		if (a.row * board[0].length + a.col == move) bestAction = a;
       }
       
       if(this.maxTurn >= 0)
@@ -177,112 +254,521 @@ public class OthelloAlphaBetaAI extends AbstractAI {
       return bestAction.toString();
   }
 
+  /**
+  * Search the board to a fixed depth with no clock (starting from an empty transposition table).
+  *   Used to measure how long the search takes to reach a depth (see OthelloSearchBench).
+  * @return the best move as a square (row*cols+col)
+  **/
+  public synchronized int searchToDepth(int player, char[][] board, int depth)
+  {
+  	OthelloGame g = new OthelloGame(-1, null, null, false, 0);
+  	g.updateState(player, board);
+  	tt.clear();
+  	long start = System.currentTimeMillis();
+  	int move = search(player, board, g.getActions(player), depth, null);
+  	moveStats.setTime(System.currentTimeMillis() - start);
+  	return move;
+  }
 
-  public char [][] result (char [][] board, OthelloGame.Action action, int player) {
-  	practiceGame.updateState(player, board);
-  	practiceGame.processMove(player, action.row, action.col);
-  	return (char[][]) practiceGame.getStateAsObject();
+  /**
+  * The same as searchToDepth but with the deterministic parallel search.
+  **/
+  public synchronized int searchFixedDepth(int player, char[][] board, int depth)
+  {
+  	OthelloGame g = new OthelloGame(-1, null, null, false, 0);
+  	g.updateState(player, board);
+  	long start = System.currentTimeMillis();
+  	int move = searchDeterministic(player, board, g.getActions(player), depth);
+  	moveStats.setTime(System.currentTimeMillis() - start);
+  	return move;
   }
 
-    /**
-    * Away wishes to MINimize the score.
-    * @param: The board state to determine minimum move
-    **/
-    private int minValue(char[][] board, int alpha, int beta, int depth)
-    {
-    	int curAlpha = alpha;
-    	int curBeta = beta;
+  /**
+  * Search every move to exactly this depth (0 = use the clock, the default).
+  *   The fixed depth search always picks the same move for the same board however
+  *   many threads it uses, so tournament games can be replayed.
+  **/
+  public synchronized void setFixedDepth(int depth) { fixedDepth = Math.max(0, depth); }
 
-    	int turn = 1 - game.getPlayer();
+  /**
+  * Play with this much time for the whole game (used when there is no fixed depth).
+  * @param overheadMs Time lost per move outside the AI (0 when there is no server)
+  **/
+  public synchronized void setTimeControl(long totalMs, long overheadMs) { timeManager = new TimeManager(totalMs, overheadMs); }
 
-    	if (depth <= 0) 
-    	{
-    		int utilValue = evalBoard(turn, board);
-    		return utilValue;
+  /**
+  * Solve the endgame exactly once this many squares are empty
+  * (0 = never - always use the evaluation function).
+  *   From endgameEmpties on the solver finds a winning (or drawing) move,
+  *   and 4 empties later - when it is roughly as fast - the move with the best final score.
+  *   At most OthelloEndgame.MAX_EMPTIES.
+  **/
+  public synchronized void setEndgameEmpties(int empties)
+  {
+  	empties = Math.min(empties, OthelloEndgame.MAX_EMPTIES);
+  	endgameEmpties = Math.max(0, empties);
+  	exactEmpties = Math.max(0, empties - 4);
+  }
 
-    	}
+  /**
+  * Use the given number of threads to search (1 = no helpers).
+  **/
+  public synchronized void setThreads(int threads)
+  {
+  	if (threads < 1) threads = 1;
+  	if (threads == this.threads) return;
+  	shutdownHelpers();
+  	if (ybwc != null) ybwc.shutdown();
+  	ybwc = null;
+  	this.threads = threads;
+  	helpers = new OthelloSearch[threads - 1];
+  	for (int i = 0; i < helpers.length; i++)
+  		helpers[i] = new OthelloSearch(this, tt, newPracticeGame());
+  	if (helpers.length > 0)
+  		helperPool = Executors.newFixedThreadPool(helpers.length, task -> {
+  			Thread t = new Thread(task, "OthelloSearch helper");
+  			t.setDaemon(true);  // Never keep the client alive
+  			return t;
+  		});
+  }
 
-      // Is this a terminal board
-    	practiceGame.updateState(turn,board);
-    	if (practiceGame.computeWinner())
-    	{
-    		int w = practiceGame.getWinner();
-    		return game.getPlayer() == 0 ? practiceGame.getHomeScore() - practiceGame.getAwayScore() :
-    		practiceGame.getAwayScore() - practiceGame.getHomeScore();
-    	}
-    	ArrayList<OthelloGame.Action> actions = practiceGame.getActions(turn);
-    	if (actions == null || actions.size() == 0) {
-        // No moves
-    		return maxValue(board, curAlpha, curBeta, depth-1);
-    	}
-      // Determine Maximum value among all possible actions
-      int bestScore = Integer.MAX_VALUE; // Positive "Infinity"
-      for (OthelloGame.Action a : actions)
-      {
-      	char [][] copyBoard = result(board, a, turn);
-      	bestScore = Math.min(bestScore, maxValue(copyBoard, curAlpha, curBeta, depth-1));
+  public int getThreads() { return threads; }
 
-      	if (bestScore <= curAlpha) {
-      		return bestScore;
-      	}
+  /** How much to output: 0 = nothing, >0 = more stuff **/
+  public synchronized void setVerbose(int verbose) { this.verbose = verbose; }
 
-      	curBeta = Math.min(curBeta, bestScore);
-      }
-      return bestScore;
+  /** Nodes visited (by all threads) in the last search **/
+  public long getLastNodes() { return moveStats == null ? 0 : moveStats.getNodes(); }
+
+  public SearchStats getMoveStats() { return moveStats; }
+  public SearchStats getGameStats() { return gameStats; }
+
+  /** The principal variation found by the last search (moves like "2d", blank if there wasn't one) **/
+  public String getPrincipalVariation() { return mainSearch.getPrincipalVariation(); }
+
+  /** How often the first move tried caused the cutoff in the last search (0-1) **/
+  public double getFirstCutoffRate() { return (moveStats == null || moveStats.getCutoffs() == 0) ? 0 : moveStats.getFirstCutoffRate(); }
+
+  /**
+  * Lazy SMP: the main search and the helpers all search the same root and share the
+  * transposition table.  Helpers start at alternating depths with the root moves rotated
+  * so they drift apart, and mostly serve to fill the table for the main search.
+  * When the main search stops (clock or maxDepth) the helpers are stopped too, and
+  * the move from the deepest completed iteration is played (the main search wins ties).
+  * @param clock The clock for the main search (null = search every depth up to maxDepth)
+  * @return the best move as a square (row*cols+col)
+  **/
+  private int search(int player, char[][] board, ArrayList<OthelloGame.Action> actions, int maxDepth, TimeManager clock)
+  {
+  	int cols = board[0].length;
+  	int count = actions.size();
+  	int[] rootMoves = new int[count];
+  	for (int i = 0; i < count; i++)
+  		rootMoves[i] = actions.get(i).row * cols + actions.get(i).col;
+
+  	tt.newSearch();
+  	mainSearch.setPosition(player, board);
+  	mainSearch.setTimeManager(clock);
+
+  	List<Future<Integer>> running = new ArrayList<Future<Integer>>();
+  	for (int i = 0; i < helpers.length; i++)
+  	{
+  		final OthelloSearch helper = helpers[i];
+  		final int[] moves = new int[count];
+  		for (int j = 0; j < count; j++)
+  			moves[j] = rootMoves[(j + i + 1) % count];
+  		final int firstDepth = 1 + (i + 1) % 2;
+  		helper.setPosition(player, board);
+  		running.add(helperPool.submit(() -> helper.iterate(moves, count, firstDepth, maxDepth)));
+  	}
+
+  	int move = mainSearch.iterate(rootMoves, count, 1, maxDepth);
+  	int depth = mainSearch.getCompletedDepth();
+  	long nodes = mainSearch.getNodes(), leaves = mainSearch.getLeaves();
+  	long probes = mainSearch.getTtProbes(), hits = mainSearch.getTtHits();
+  	long cutoffs = mainSearch.getCutoffs(), firstCutoffs = mainSearch.getFirstCutoffs();
+
+  	for (OthelloSearch helper : helpers) helper.stop();
+  	for (int i = 0; i < running.size(); i++)
+  	{
+  		try {
+  			running.get(i).get();
+  		} catch (Exception e) {
+  			System.err.println("ERROR: search helper failed: " + e);
+  			continue;
+  		}
+  		nodes += helpers[i].getNodes();
+  		leaves += helpers[i].getLeaves();
+  		probes += helpers[i].getTtProbes();
+  		hits += helpers[i].getTtHits();
+  		cutoffs += helpers[i].getCutoffs();
+  		firstCutoffs += helpers[i].getFirstCutoffs();
+  		if (helpers[i].getCompletedDepth() > depth)
+  		{
+  			depth = helpers[i].getCompletedDepth();
+  			move = helpers[i].getBestMove();
+  		}
+  	}
+  	moveStats = new SearchStats(nodes, leaves, probes, hits, cutoffs, firstCutoffs, depth, 0);
+  	return move;
   }
-    /**
-    * Home wishes to MAXimize the score.
-    * @param: The board state to determine maximum move
-    **/
-    private int maxValue(char[] [] board, int alpha, int beta, int depth) {
-    	int curAlpha = alpha;
-    	int curBeta = beta;
 
-      //System.out.println("Depth (maxValue) = " + depth);
+  /**
+  * Search to the end of the game (8x8 boards only).
+  *   Win/loss/draw first, then the exact disc differential if there are few enough empties.
+  *   The solver stops at the soft limit, so if it can't finish the search that takes
+  *   over still has until the hard limit.  The last answer the solver finished is used.
+  * @return the best move as a square or -1 if there isn't one (out of time, or a loss with no exact score)
+  **/
+  private int solveEndgame(int player, int empties)
+  {
+  	long own = game.getPieces(player);
+  	long opp = game.getPieces(1 - player);
+  	endgame.setTimeManager(timeManager);
+  	int result = endgame.solve(own, opp, true);
+  	if (endgame.isAborted()) return -1;
+  	int move = endgame.getBestMove();
+  	moveStats = new SearchStats(endgame.getNodes(), 0, 0, 0, 0, 0, empties, 0);
+  	if (empties <= exactEmpties)
+  	{
+  		endgame.solve(own, opp, false);
+  		moveStats.add(new SearchStats(endgame.getNodes(), 0, 0, 0, 0, 0, empties, 0));
+  		if (!endgame.isAborted()) return endgame.getBestMove();
+  	}
+  	// Every move loses against perfect play - let the evaluation pick the one most likely to trip the opponent up
+  	if (result < 0) return -1;
+  	return move;
+  }
 
-    	int turn = game.getPlayer();
+  /**
+  * Young Brothers Wait: split at the root and along the PV over a ForkJoinPool (see OthelloParallelSearch).
+  *   No transposition table and no clock, so the move depends only on the board and depth.
+  * @return the best move as a square (row*cols+col)
+  **/
+  private int searchDeterministic(int player, char[][] board, ArrayList<OthelloGame.Action> actions, int depth)
+  {
+  	int cols = board[0].length;
+  	int count = actions.size();
+  	int[] rootMoves = new int[count];
+  	for (int i = 0; i < count; i++)
+  		rootMoves[i] = actions.get(i).row * cols + actions.get(i).col;
+  	if (ybwc == null) ybwc = new OthelloParallelSearch(this, threads);
+  	int move = ybwc.search(player, board, rootMoves, count, Math.max(1, depth));
+  	moveStats = new SearchStats(ybwc.getNodes(), ybwc.getLeaves(), 0, 0, ybwc.getCutoffs(), ybwc.getFirstCutoffs(),
+  		Math.max(1, depth), 0);
+  	return move;
+  }
 
-    	if (depth <= 0) 
-    	{
-    		int utilValue = evalBoard(turn, board);
-    		return utilValue;
+  /**
+  * Think on the opponent's time (see PONDER_PREDICTED and PONDER_ALL).
+  *   Each reply's position is searched with no clock until stopPondering,
+  *   filling the transposition table, and the deepest result for each is kept.
+  *   Only the clock driven search ponders (not the fixed depth one).
+  **/
+  public synchronized void ponder()
+  {
+  	if (ponderMode == PONDER_OFF || fixedDepth > 0 || game == null || game.isDone()) return;
+  	int player = game.getPlayer();
+  	if (game.getTurn() != 1 - player) return;  // Only on the opponent's time
+  	char[][] board = (char[][]) game.getStateAsObject();
+  	long base = OthelloGame.computeHash(board, 1 - player);
+  	if (base == ponderBase) return;  // Already thinking about it
+  	stopPondering();
+  	ponderBase = base;
+  	ponderResults.clear();
 
-    	}
-      // Is this a terminal board
-    	practiceGame.updateState(turn, board);
-    	if (practiceGame.computeWinner())
-    	{
-    		int w = practiceGame.getWinner();
-    		return game.getPlayer() == 0 ? practiceGame.getHomeScore() - practiceGame.getAwayScore() :
-    		practiceGame.getAwayScore() - practiceGame.getHomeScore();
-    	}
-    	ArrayList<OthelloGame.Action> actions = practiceGame.getActions(turn);
-    	if (actions == null || actions.size() == 0) {
-        // No moves
-    		return minValue(board, curAlpha, curBeta, depth-1);
-    	}
-      // Determine Maximum value among all possible actions
-      int bestScore = Integer.MIN_VALUE; // Negative "Infinity"
-      for (OthelloGame.Action a: actions)
-      {
-      	char [][] copyBoard = result(board, a, turn);
-      	bestScore = Math.max(bestScore, minValue(copyBoard, curAlpha, curBeta, depth-1));
+  	OthelloGame scratch = newPracticeGame();
+  	scratch.updateState(1 - player, board);
+  	int[] replies = new int[board.length * board[0].length];
+  	int count = scratch.getMoves(1 - player, replies);
+  	if (count == 0) return;
+  	int guess = -1;
+  	for (int i = 0; i < count; i++)
+  		if (replies[i] == predictedReply) guess = i;
+  	if (guess >= 0)
+  	{
+  		// The expected reply first (or on its own)
+  		int move = replies[guess];
+  		replies[guess] = replies[0];
+  		replies[0] = move;
+  		if (ponderMode == PONDER_PREDICTED) count = 1;
+  	}
+  	if (ponderSearch == null)
+  	{
+  		ponderSearch = new OthelloSearch(this, tt, newPracticeGame());
+  		ponderPool = Executors.newSingleThreadExecutor(task -> {
+  			Thread t = new Thread(task, "OthelloSearch ponder");
+  			t.setDaemon(true);  // Never keep the client alive
+  			return t;
+  		});
+  	}
+  	final int n = count;
+  	final int depth = Math.min(maxDepth, countPieces(board)[2] - 1);
+  	ponderStop = false;
+  	pondering = ponderPool.submit(() -> ponderReplies(player, scratch, replies, n, depth));
+  }
 
-      	if (bestScore >= curBeta) {
-      		return bestScore;
-      	}
+  /**
+  * The ponder task: one reply is searched deeper and deeper, several are searched a ply
+  * deeper each in turn so they all get some of the time.
+  **/
+  private void ponderReplies(int player, OthelloGame scratch, int[] replies, int count, int maxDepth)
+  {
+  	tt.newSearch();
+  	if (count == 1)
+  	{
+  		ponderReply(player, scratch, replies[0], 1, maxDepth);
+  		return;
+  	}
+  	for (int depth = 1; depth <= maxDepth; depth++)
+  		for (int i = 0; i < count; i++)
+  			if (!ponderReply(player, scratch, replies[i], depth, depth)) return;
+  }
 
-      	curAlpha = Math.max(curAlpha, bestScore);
-      }
-      return bestScore;
+  /**
+  * Search our answer to one reply from firstDepth to lastDepth ply and keep the result.
+  * @return false if pondering has been stopped
+  **/
+  private boolean ponderReply(int player, OthelloGame scratch, int reply, int firstDepth, int lastDepth)
+  {
+  	scratch.makeMove(1 - player, reply);
+  	long key = scratch.getHash();
+  	int[] moves = new int[scratch.getRows() * scratch.getCols()];
+  	int count = scratch.getMoves(player, moves);
+  	if (count > 0) ponderSearch.setPosition(player, (char[][]) scratch.getStateAsObject());
+  	scratch.unmakeMove();
+  	if (ponderStop) return false;  // Checked after setPosition (which clears the search's stop flag)
+  	if (count == 0) return true;   // We would have to pass - nothing to think about
+
+  	long start = System.currentTimeMillis();
+  	int move = ponderSearch.iterate(moves, count, firstDepth, lastDepth);
+  	int depth = ponderSearch.getCompletedDepth();
+  	if (depth < firstDepth) return !ponderStop;  // Stopped before it finished anything
+  	PonderResult result = new PonderResult();
+  	result.move = move;
+  	result.reply = (ponderSearch.getPrincipalMove(0) == move) ? ponderSearch.getPrincipalMove(1) : -1;
+  	result.stats = new SearchStats(ponderSearch.getNodes(), ponderSearch.getLeaves(), ponderSearch.getTtProbes(),
+  		ponderSearch.getTtHits(), ponderSearch.getCutoffs(), ponderSearch.getFirstCutoffs(), depth,
+  		System.currentTimeMillis() - start);
+  	ponderResults.put(key, result);
+  	return !ponderStop;
+  }
+
+  /**
+  * Stop pondering and wait for the ponder task.  Its results are kept (until the next ponder).
+  **/
+  public synchronized void stopPondering()
+  {
+  	ponderBase = 0;
+  	if (pondering == null) return;
+  	ponderStop = true;
+  	ponderSearch.stop();
+  	try {
+  		pondering.get();
+  	} catch (Exception e) {
+  		System.err.println("ERROR: pondering failed: " + e);
+  	}
+  	pondering = null;
+  }
+
+  /** Think on the opponent's time: PONDER_OFF, PONDER_PREDICTED or PONDER_ALL **/
+  public synchronized void setPondering(int mode)
+  {
+  	if (mode == PONDER_OFF) stopPondering();
+  	ponderMode = mode;
+  }
+
+  public int getPondering() { return ponderMode; }
+
+  /** What pondering found for one reply **/
+  private static class PonderResult {
+  	int move;           // Our answer (square)
+  	int reply;          // The opponent's expected reply to that (-1 = no guess)
+  	SearchStats stats;  // The search that found it
+  }
+
+  /**
+  * Stop the helper threads (if any)
+  **/
+  private void shutdownHelpers()
+  {
+  	if (helperPool != null) helperPool.shutdownNow();
+  	helperPool = null;
+  	helpers = new OthelloSearch[0];
+  	threads = 1;
+  }
+
+  /**
+  * Read evaluation weights written by saveWeights (e.g. by OthelloTuner).
+  *   Lines are "name value" for the term multipliers and "weights" followed by one
+  *   row of weightedScores.  Anything not in the file keeps its current value.
+  * @return false if the file couldn't be read (the weights are unchanged)
+  **/
+  public synchronized boolean loadWeights(String fileName)
+  {
+  	int[] terms = evalWeights.clone();
+  	int[][] squares = new int[weightedScores.length][];
+  	int row = 0;
+  	try (BufferedReader in = new BufferedReader(new FileReader(fileName))) {
+  		String line;
+  		while ((line = in.readLine()) != null) {
+  			String[] words = line.trim().split("\\s+");
+  			if (words[0].isEmpty() || words[0].startsWith("#")) continue;
+  			if (words[0].equals("weights")) {
+  				if (row >= squares.length || words.length != weightedScores[0].length + 1)
+  					throw new IOException("bad weights row: " + line);
+  				squares[row] = new int[words.length - 1];
+  				for (int c = 1; c < words.length; c++) squares[row][c - 1] = Integer.parseInt(words[c]);
+  				row++;
+  				continue;
+  			}
+  			int term = Arrays.asList(WEIGHT_NAMES).indexOf(words[0]);
+  			if (term < 0 || words.length != 2) throw new IOException("unrecognized line: " + line);
+  			terms[term] = Integer.parseInt(words[1]);
+  		}
+  	}
+  	catch (Exception e) {
+  		System.err.println("ERROR: could not load weights from " + fileName + ": " + e.getMessage());
+  		return false;
+  	}
+  	if (row != 0 && row != squares.length) {
+  		System.err.println("ERROR: could not load weights from " + fileName + ": " + row + " rows of weights");
+  		return false;
+  	}
+  	evalWeights = terms;
+  	for (int r = 0; r < row; r++) weightedScores[r] = squares[r];
+  	// Refit the square weights the practice boards sum
+  	if (practiceGame != null) practiceGame.setSquareWeights(weightedScores);
+  	if (helpers != null)
+  		for (OthelloSearch helper : helpers)
+  			helper.getPracticeGame().setSquareWeights(weightedScores);
+  	return true;
+  }
+
+  /**
+  * Write the evaluation weights in the format loadWeights reads.
+  **/
+  public synchronized void saveWeights(String fileName) throws IOException
+  {
+  	try (PrintWriter out = new PrintWriter(new FileWriter(fileName))) {
+  		out.println("# OthelloAlphaBetaAI evaluation weights");
+  		for (int i = 0; i < WEIGHT_NAMES.length; i++)
+  			out.println(WEIGHT_NAMES[i] + " " + evalWeights[i]);
+  		for (int[] row : weightedScores) {
+  			out.print("weights");
+  			for (int w : row) out.print(" " + w);
+  			out.println();
+  		}
+  	}
+  }
+
+  /**
+  * A board for a search to play on, keeping the features evaluate needs.
+  **/
+  public OthelloGame newPracticeGame()
+  {
+  	OthelloGame g = new OthelloGame(-1, null, null, false, 0);
+  	g.setSquareWeights(weightedScores);
+  	if (patterns != null) g.setPatternTracking(true);
+  	return g;
+  }
+
+  /**
+  * Evaluate with these pattern tables (EVAL_PATTERN) from now on.
+  *   Boards of a size the tables don't cover fall back to EVAL_INCREMENTAL.
+  **/
+  public synchronized void setPatterns(OthelloPatterns patterns)
+  {
+  	this.patterns = patterns;
+  	evalMode = EVAL_PATTERN;
+  	practiceGame.setPatternTracking(true);
+  	for (OthelloSearch helper : helpers)
+  		helper.getPracticeGame().setPatternTracking(true);
+  	if (ponderSearch != null) ponderSearch.getPracticeGame().setPatternTracking(true);
+  }
+
+  /**
+  * Load pattern tables from a file (see OthelloPatterns) and evaluate with them.
+  * @return false if the file couldn't be loaded (the evaluation is unchanged)
+  **/
+  public boolean loadPatterns(String fileName)
+  {
+  	try {
+  		setPatterns(OthelloPatterns.load(fileName));
+  		return true;
+  	}
+  	catch (IOException e) {
+  		System.err.println("ERROR: could not load patterns: " + e.getMessage());
+  		return false;
+  	}
+  }
+
+  /**
+  * Play from this opening book while it has a move (null = no book).
+  **/
+  public synchronized void setBook(OthelloBook book) { this.book = book; }
+
+  /**
+  * Load an opening book file (see OthelloBook).
+  * @return false if the file couldn't be loaded (the book is unchanged)
+  **/
+  public boolean loadBook(String fileName)
+  {
+  	try {
+  		setBook(OthelloBook.load(fileName));
+  		return true;
+  	}
+  	catch (IOException e) {
+  		System.err.println("ERROR: could not load the opening book: " + e.getMessage());
+  		return false;
+  	}
+  }
+
+  /**
+  * Choose the evaluation function the searches use (EVAL_CLASSIC or EVAL_INCREMENTAL).
+  **/
+  public synchronized void setEvalMode(int mode) { evalMode = mode; }
+
+  /**
+  * The value of the position on g for player (the searches' leaf evaluation).
+  *   The disc counts, corners, frontier discs (next to an empty square) and square weights
+  *   are kept up to date by g as moves are made and unmade, so only mobility is counted here.
+  *   Each term is scaled by its multiplier in evalWeights.
+  *   The pattern evaluation is the pattern tables' score plus the same mobility term.
+  *   g must come from newPracticeGame.  Safe to call from several search threads at once.
+  **/
+  public int evaluate(OthelloGame g, int player)
+  {
+  	if (evalMode == EVAL_CLASSIC) return evalBoard(player, (char[][]) g.getStateAsObject());
+  	int opp = 1 - player;
+  	if (evalMode == EVAL_PATTERN && g.getPatternLayout() != null &&
+  		patterns.supports(g.getPatternLayout().rows, g.getPatternLayout().cols))
+  		return patterns.evaluate(g, player) +
+  			ratio(evalWeights[W_MOBILITY], Long.bitCount(g.getValidMoves(player)), Long.bitCount(g.getValidMoves(opp)));
+  	int score = ratio(evalWeights[W_PARITY], g.getDiscCount(player), g.getDiscCount(opp));
+  	score += ratio(evalWeights[W_CORNERS], g.getCornerCount(player), g.getCornerCount(opp));
+  	score += ratio(evalWeights[W_MOBILITY], Long.bitCount(g.getValidMoves(player)), Long.bitCount(g.getValidMoves(opp)));
+  	score += ratio(evalWeights[W_FRONTIER], g.getFrontierCount(opp), g.getFrontierCount(player));  // Fewer is better
+  	score += evalWeights[W_SQUARES] * (g.getWeightSum(player) - g.getWeightSum(opp)) / 100;
+  	return score;
+  }
+
+  /** weight * (mine - theirs) / (mine + theirs), or 0 if neither has any **/
+  private static int ratio(int weight, int mine, int theirs)
+  {
+  	return (mine + theirs == 0) ? 0 : weight * (mine - theirs) / (mine + theirs);
   }
 
+  /**
+  * The original evaluation (coin parity, corners and mobility) counted from the board.
+  *   8x8 boards only.  Safe to call from several search threads at once.
+  **/
   public int evalBoard(int player, char[][] board)
   {
-  	this.coinParityHeuristic = calcuateCoinParity(player,board);
-  	this.cornerHeuristic = calcuateCornerHeuristic(player, board);
-  	this.stabiltyHeuristic = calcualteStabilityHeuristic(player,board);
-  	return this.coinParityHeuristic+this.cornerHeuristic+this.stabiltyHeuristic;
+  	int coinParityHeuristic = calcuateCoinParity(player,board);
+  	int cornerHeuristic = calcuateCornerHeuristic(player, board);
+  	int stabiltyHeuristic = calcualteStabilityHeuristic(player,board);
+  	return coinParityHeuristic+cornerHeuristic+stabiltyHeuristic;
   }
   private int calcualteStabilityHeuristic(int player, char [] [] board)
   {   
@@ -496,6 +982,7 @@ public class OthelloAlphaBetaAI extends AbstractAI {
     **/
     @Override
     public synchronized void postWinner(char result) {
+    	stopPondering();
       // This AI probably wants to store what it has learned
       // about this particular game.
     	String [] setOfMovesArr = setOfMoves.toArray(new String [0]);
@@ -535,6 +1022,14 @@ public class OthelloAlphaBetaAI extends AbstractAI {
     @Override
     public synchronized void end() 
     {
+    	stopPondering();
+    	if (ponderPool != null) ponderPool.shutdownNow();
+    	ponderPool = null;
+    	ponderSearch = null;
+    	shutdownHelpers();
+    	if (ybwc != null) ybwc.shutdown();
+    	ybwc = null;
+    	if (this.fileName == null) return;
       // This AI probably wants to store (in a file) what
       // it has learned from playing all the games so far...
     	try {
@@ -0,0 +1,108 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Server Project
+ * This project is designed to support multiple game platforms to test
+ * AI-based solutions.
+ *
+ * OthelloBitboard:
+ *    Move generation and flipping for an 8x8 Othello board stored as
+ *    two 64-bit masks (one per player).
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+/***********************************************************
+ * Static helpers for the 8x8 bitboard representation used by OthelloGame.
+ *   Square (r,c) is bit r*8+c.  So bit 0 is 0a and bit 63 is 7h.
+ *   Moving EAST (c+1) is a left shift by 1, SOUTH (r+1) is a left shift by 8.
+ *   The column masks stop pieces from wrapping around to the next row.
+ ***********************************************************/
+public final class OthelloBitboard {
+    public static final int SIZE = 8;      // Only 8x8 boards fit in a long
+    public static final int SQUARES = 64;
+
+    private static final long NOT_COL_A = 0xFEFEFEFEFEFEFEFEL;  // Every square except column a
+    private static final long NOT_COL_H = 0x7F7F7F7F7F7F7F7FL;  // Every square except column h
+    private static final long INNER_COLS = NOT_COL_A & NOT_COL_H; // Columns b-g
+
+    // Directions come in pairs: even = shift left (towards 7h), odd = shift right (towards 0a).
+    //   SE/NW by 9, S/N by 8, SW/NE by 7, E/W by 1
+    private static final int[] SHIFT = { 9, 9, 8, 8, 7, 7, 1, 1 };
+    private static final long[] WRAP = { NOT_COL_A, NOT_COL_H, -1L, -1L, NOT_COL_H, NOT_COL_A, NOT_COL_A, NOT_COL_H };
+
+    private OthelloBitboard() { }
+
+    /** Square index for the given row and column **/
+    public static int square(int row, int col) { return row * SIZE + col; }
+    public static int row(int square) { return square >>> 3; }
+    public static int col(int square) { return square & 7; }
+
+    /**
+     * Shift every piece one step in direction d (0-7, see SHIFT above).
+     **/
+    public static long shift(long b, int d) {
+        return ((d & 1) == 0 ? b << SHIFT[d] : b >>> SHIFT[d]) & WRAP[d];
+    }
+
+    /**
+     * All the empty squares where the player owning "own" may legally move.
+     * A run of opponent pieces is grown along each direction (at most 6 long)
+     * and any empty square just past the run is a valid move.
+     * Opponent pieces on the a/h columns can never be inside a horizontal or
+     * diagonal run, so masking them out also stops any wrap-around.
+     **/
+    public static long validMoves(long own, long opp) {
+        long empty = ~(own | opp);
+        long inner = opp & INNER_COLS;
+        long moves = 0L;
+        for (int i = 0; i < 8; i += 2) {
+            int s = SHIFT[i];
+            long o = (s == 8) ? opp : inner;
+
+            // Towards 7h
+            long x = (own << s) & o;
+            x |= (x << s) & o;
+            x |= (x << s) & o;
+            x |= (x << s) & o;
+            x |= (x << s) & o;
+            x |= (x << s) & o;
+            moves |= (x << s) & empty;
+
+            // Towards 0a
+            x = (own >>> s) & o;
+            x |= (x >>> s) & o;
+            x |= (x >>> s) & o;
+            x |= (x >>> s) & o;
+            x |= (x >>> s) & o;
+            x |= (x >>> s) & o;
+            moves |= (x >>> s) & empty;
+        }
+        return moves;
+    }
+
+    /**
+     * The opponent pieces that would be flipped by placing a piece on square sq.
+     *   Returns 0 if the move flips nothing (and is therefore invalid).
+     **/
+    public static long flips(long own, long opp, int sq) {
+        long move = 1L << sq;
+        if (((own | opp) & move) != 0) return 0L;  // Spot not available
+        long flipped = 0L;
+        for (int d = 0; d < 8; d++) {
+            long run = 0L;
+            long x = shift(move, d);
+            while ((x & opp) != 0) {
+                run |= x;
+                x = shift(x, d);
+            }
+            if ((x & own) != 0) flipped |= run;  // Capped by one of our own pieces
+        }
+        return flipped;
+    }
+
+    /** Number of pieces in the mask **/
+    public static int count(long b) { return Long.bitCount(b); }
+}
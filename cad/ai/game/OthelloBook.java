@@ -0,0 +1,326 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * OthelloBook:
+ *    An opening book - the results of the games that went through each
+ *    early position - and the tool that compiles it.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/***********************************************************
+ * An opening book, looked up straight from a memory mapped file.
+ *   A position's key is the smallest Zobrist key (OthelloGame.computeHash) of
+ *   its symmetric versions (rotations and reflections - 8 for a square board),
+ *   so every way of reaching the same shape shares one entry.
+ *   Each entry is a position after a move, with the Record of the games that
+ *   went through it - wins, losses, ties and the learned score - for the
+ *   player who had just moved (the one not to move).
+ *   File format (big-endian): int MAGIC, int VERSION, int rows, int cols,
+ *   then ENTRY_BYTES per position, sorted by key:
+ *     long key, int wins, int losses, int ties, double score
+ *
+ *   To compile a book:
+ *     java cad.ai.game.OthelloBook --out=FILE [--corpus=FILE ...] [--records=FILE] [options]
+ *   from the positions SelfPlay writes (--positions) and/or an old
+ *   "player#move#w-l-t#score" record file (only the first moves of X can be
+ *   placed on a board, so the rest of such a file is skipped).
+ ***********************************************************/
+public class OthelloBook {
+    public static final int MAGIC = 0x4F424F4B;  // "OBOK"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int ENTRY_BYTES = 28;
+    public static final int MIN_GAMES = 3;        // Don't play a book move seen in fewer games than this
+    public static final int DEFAULT_PLIES = 20;   // Positions this many moves (discs) into the game go in the book
+
+    private MappedByteBuffer buf;
+    private int rows, cols;
+    private int size;
+
+    /**
+     * Map a book file (the entries are read from it as they are needed).
+     * @throws IOException if it can't be read or isn't a book file
+     **/
+    public static OthelloBook load(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long bytes = channel.size();
+            if (bytes < HEADER_BYTES) throw new IOException(fileName + " is not a book file");
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+            if (buf.getInt(0) != MAGIC) throw new IOException(fileName + " is not a book file");
+            int version = buf.getInt(4);
+            if (version != VERSION) throw new IOException(fileName + ": unsupported version " + version);
+            if ((bytes - HEADER_BYTES) % ENTRY_BYTES != 0 || (bytes - HEADER_BYTES) / ENTRY_BYTES > Integer.MAX_VALUE)
+                throw new IOException(fileName + " is damaged");
+            OthelloBook book = new OthelloBook();
+            book.buf = buf;
+            book.rows = buf.getInt(8);
+            book.cols = buf.getInt(12);
+            book.size = (int) ((bytes - HEADER_BYTES) / ENTRY_BYTES);
+            return book;
+        }
+    }
+
+    private OthelloBook() { }
+
+    public int size() { return size; }
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+
+    /**
+     * The games through this position (see key), or null if it isn't in the book.
+     *   A binary search of the mapped file - only absolute reads, so any number
+     *   of threads can probe at once.
+     **/
+    public Record probe(long key) {
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = HEADER_BYTES + mid * ENTRY_BYTES;
+            long k = buf.getLong(at);
+            if (k < key) lo = mid + 1;
+            else if (k > key) hi = mid - 1;
+            else return new Record(buf.getInt(at + 8), buf.getInt(at + 12), buf.getInt(at + 16), buf.getDouble(at + 20));
+        }
+        return null;
+    }
+
+    /**
+     * The book's move for player on this board (a square r*cols+c): the move to the
+     * position with the best score among those seen in at least MIN_GAMES games
+     * (the most games breaks a tie).
+     * @return -1 if the book has no such move (or is for another size of board)
+     **/
+    public int chooseMove(char[][] board, int player) {
+        if (board.length != rows || board[0].length != cols) return -1;
+        OthelloGame g = new OthelloGame(-1, null, null, false, 0);
+        g.updateState(player, board);
+        int[] moves = new int[rows * cols];
+        int count = g.getMoves(player, moves);
+        int best = -1;
+        Record bestRecord = null;
+        for (int i = 0; i < count; i++) {
+            g.makeMove(player, moves[i]);
+            Record r = probe(key((char[][]) g.getStateAsObject(), 1 - player));
+            g.unmakeMove();
+            if (r == null || games(r) < MIN_GAMES) continue;
+            if (bestRecord == null || r.getScore() > bestRecord.getScore() ||
+                (r.getScore() == bestRecord.getScore() && games(r) > games(bestRecord))) {
+                best = moves[i];
+                bestRecord = r;
+            }
+        }
+        return best;
+    }
+
+    /** What the book knows about player's move to square (null if nothing) **/
+    public Record probeMove(char[][] board, int player, int square) {
+        if (board.length != rows || board[0].length != cols) return null;
+        OthelloGame g = new OthelloGame(-1, null, null, false, 0);
+        g.updateState(player, board);
+        if (!g.makeMove(player, square)) return null;
+        return probe(key((char[][]) g.getStateAsObject(), 1 - player));
+    }
+
+    public static int games(Record r) { return r.wins + r.losses + r.ties; }
+
+    /**
+     * The book key of a board with turn to move: the smallest Zobrist key of its
+     * 8 symmetries (4 if the board isn't square).
+     **/
+    public static long key(char[][] board, int turn) {
+        int rows = board.length, cols = board[0].length;
+        long best = Long.MAX_VALUE;
+        for (int t = 0; t < 8; t++) {
+            boolean transpose = (t & 4) != 0;
+            if (transpose && rows != cols) continue;
+            boolean flipRows = (t & 1) != 0, flipCols = (t & 2) != 0;
+            char[][] b = new char[rows][cols];
+            for (int r = 0; r < rows; r++)
+                for (int c = 0; c < cols; c++) {
+                    int rr = flipRows ? rows - 1 - r : r;
+                    int cc = flipCols ? cols - 1 - c : c;
+                    b[r][c] = transpose ? board[cc][rr] : board[rr][cc];
+                }
+            best = Math.min(best, OthelloGame.computeHash(b, turn));
+        }
+        return best;
+    }
+
+    /**
+     * Write a book file (the entries are sorted here).
+     **/
+    public static void write(String fileName, int rows, int cols, Map<Long, Record> entries) throws IOException {
+        long[] keys = new long[entries.size()];
+        int n = 0;
+        for (long k : entries.keySet()) keys[n++] = k;
+        Arrays.sort(keys);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(cols);
+            for (long k : keys) {
+                Record r = entries.get(k);
+                out.writeLong(k);
+                out.writeInt(r.wins);
+                out.writeInt(r.losses);
+                out.writeInt(r.ties);
+                out.writeDouble(r.getScore());
+            }
+        }
+    }
+
+    /**
+     * Add the games of a SelfPlay positions file: every position from 1 to plies
+     * moves in, with the game's result for the player who had just moved.
+     *   The results go through Record.updateRecord in the order the games were played.
+     * @return the number of positions used
+     **/
+    private static int addCorpus(Map<Long, Record> entries, String fileName, int rows, int cols, int plies) throws IOException {
+        OthelloCorpus corpus = OthelloCorpus.load(fileName);
+        int used = 0;
+        for (int i = 0; i < corpus.size(); i++) {
+            if (corpus.getRows(i) != rows || corpus.getCols(i) != cols) continue;
+            char[][] board = corpus.getBoard(i);
+            int discs = 0;
+            for (char[] row : board)
+                for (char c : row) if (c != ' ') discs++;
+            if (discs - 4 < 1 || discs - 4 > plies) continue;
+            int turn = corpus.getTurn(i);
+            int mover = 1 - turn;
+            int diff = (mover == 0) ? corpus.getResult(i) : -corpus.getResult(i);
+            int result = diff > 0 ? 2 : diff < 0 ? 0 : 1;  // As Record counts them
+            long key = key(board, turn);
+            Record r = entries.get(key);
+            if (r == null) {
+                r = new Record(mover, false);
+                entries.put(key, r);
+            }
+            r.updateRecord(result);
+            used++;
+        }
+        return used;
+    }
+
+    /**
+     * Add an old style record file ("player#move#wins-losses-ties#score" per line).
+     *   Those records have no board, so only X's (player 0's) first moves can be placed.
+     * @return the number of records used (the rest are skipped)
+     **/
+    private static int addRecords(Map<Long, Record> entries, String fileName, int rows, int cols) throws IOException {
+        OthelloGame start = new OthelloGame(-1, null, null, true, 0, rows, cols);
+        char[][] board = (char[][]) start.getStateAsObject();
+        int used = 0;
+        try (BufferedReader in = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] pieces = line.trim().split("#");
+                if (pieces.length != 4 || !pieces[0].equals("0")) continue;
+                String[] wlt = pieces[2].split("-");
+                try {
+                    OthelloGame.Action a = OthelloGame.Action.parse(pieces[1]);
+                    OthelloGame g = new OthelloGame(-1, null, null, false, 0);
+                    g.updateState(0, board);
+                    if (a == null || a.row >= rows || a.col >= cols || !g.makeMove(0, a.row, a.col)) continue;
+                    Record old = new Record(Integer.parseInt(wlt[0]), Integer.parseInt(wlt[1]),
+                                            Integer.parseInt(wlt[2]), Double.parseDouble(pieces[3]));
+                    long key = key((char[][]) g.getStateAsObject(), 1);
+                    Record r = entries.get(key);
+                    if (r == null) entries.put(key, old);
+                    else {
+                        // Same position from both sources: add the games, average the scores by games
+                        int n = games(r), m = games(old);
+                        if (n + m > 0) r.score = (r.score * n + old.score * m) / (n + m);
+                        r.wins += old.wins;
+                        r.losses += old.losses;
+                        r.ties += old.ties;
+                    }
+                    used++;
+                } catch (RuntimeException e) {
+                    // Not a record - skip it
+                }
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Compile a book (see the class comment).
+     **/
+    public static void main(String[] args) {
+        String out = null;
+        String records = null;
+        List<String> corpora = new ArrayList<String>();
+        int size = 8;
+        int plies = DEFAULT_PLIES;
+        int minGames = 1;
+
+        for (String arg: args) {
+            try {
+                String[] params = arg.split("=",2);
+                switch (params[0]) {
+                case "--help": printUsage(null); break;
+                case "--out": out = params[1]; break;
+                case "--corpus": corpora.add(params[1]); break;
+                case "--records": records = params[1]; break;
+                case "--size": size = Integer.parseInt(params[1]); break;
+                case "--plies": plies = Integer.parseInt(params[1]); break;
+                case "--min": minGames = Integer.parseInt(params[1]); break;
+                default:
+                    printUsage("Unrecognized parameter: " + arg);
+                }
+            } catch (Exception e) {
+                printUsage("Error processing parameter: " + arg);
+            }
+        }
+        if (out == null) printUsage("Error: the book file (--out) must be given");
+        if (corpora.isEmpty() && records == null) printUsage("Error: nothing to compile (--corpus or --records)");
+
+        Map<Long, Record> entries = new HashMap<Long, Record>();
+        try {
+            for (String corpus : corpora)
+                System.out.println(corpus + ": " + addCorpus(entries, corpus, size, size, plies) + " positions");
+            if (records != null)
+                System.out.println(records + ": " + addRecords(entries, records, size, size) + " records");
+            final int fewest = minGames;
+            entries.values().removeIf(r -> games(r) < fewest);
+            write(out, size, size, entries);
+        } catch (IOException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println(out + ": " + entries.size() + " positions");
+    }
+
+    /**
+     * Print Usage message and exit
+     **/
+    public static void printUsage(String message) {
+        System.err.println("Usage: java cad.ai.game.OthelloBook [params]");
+        System.err.println("       Where params are:");
+        System.err.println("         --help                -- Print this usage message");
+        System.err.println("         --out=FILE            -- The book file to write (MANDATORY).");
+        System.err.println("         --corpus=FILE         -- A positions file written by SelfPlay (--positions).  Can be repeated.");
+        System.err.println("         --records=FILE        -- An old player#move#w-l-t#score record file (e.g. " + AbstractAI.DATA_DIR + "firstMovesOthello.txt).");
+        System.err.println("         --size=N              -- Board size (default 8).");
+        System.err.println("         --plies=N             -- Keep positions up to N moves into the game (default " + DEFAULT_PLIES + ").");
+        System.err.println("         --min=N               -- Drop positions seen in fewer than N games (default 1).");
+        if (message != null)
+            System.err.println("       " + message);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,141 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * OthelloCorpus:
+ *    A file of Othello positions, each with the final result of the game
+ *    it came from - the training data for OthelloTuner.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/***********************************************************
+ * A corpus of positions held in primitive arrays (one entry per position),
+ * so millions of them fit in memory.
+ *   File format (big-endian): int MAGIC, int VERSION, then RECORD_BYTES per position:
+ *     byte rows, byte cols, byte turn (player to move), byte result
+ *     (the game's final disc differential for X), long X's discs, long O's discs
+ *   with disc bits numbered r*cols+c - so boards of at most 64 squares.
+ *   Records can simply be appended to an existing file.
+ ***********************************************************/
+public class OthelloCorpus {
+    public static final int MAGIC = 0x4F435250;  // "OCRP"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 8;
+    public static final int RECORD_BYTES = 20;
+
+    private int size;
+    private byte[] rows, cols, turn, result;
+    private long[] xBits, oBits;
+
+    /**
+     * Read a corpus file into memory.
+     * @throws IOException if it can't be read or isn't a corpus file
+     **/
+    public static OthelloCorpus load(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long bytes = channel.size();
+            if (bytes < HEADER_BYTES) throw new IOException(fileName + " is not a corpus file");
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+            if (buf.getInt() != MAGIC) throw new IOException(fileName + " is not a corpus file");
+            int version = buf.getInt();
+            if (version != VERSION) throw new IOException(fileName + ": unsupported version " + version);
+            long count = (bytes - HEADER_BYTES) / RECORD_BYTES;
+            if (count > Integer.MAX_VALUE) throw new IOException(fileName + " is too big");
+
+            OthelloCorpus corpus = new OthelloCorpus((int) count);
+            for (int i = 0; i < corpus.size; i++) {
+                corpus.rows[i] = buf.get();
+                corpus.cols[i] = buf.get();
+                corpus.turn[i] = buf.get();
+                corpus.result[i] = buf.get();
+                corpus.xBits[i] = buf.getLong();
+                corpus.oBits[i] = buf.getLong();
+            }
+            return corpus;
+        }
+    }
+
+    private OthelloCorpus(int size) {
+        this.size = size;
+        rows = new byte[size];
+        cols = new byte[size];
+        turn = new byte[size];
+        result = new byte[size];
+        xBits = new long[size];
+        oBits = new long[size];
+    }
+
+    public int size() { return size; }
+    public int getRows(int i) { return rows[i]; }
+    public int getCols(int i) { return cols[i]; }
+    public int getTurn(int i) { return turn[i]; }
+
+    /** Final disc differential (X - O) of the game position i came from **/
+    public int getResult(int i) { return result[i]; }
+
+    /** Position i as a board ('X', 'O' or ' ') **/
+    public char[][] getBoard(int i) {
+        char[][] board = new char[rows[i]][cols[i]];
+        for (int r = 0; r < rows[i]; r++)
+            for (int c = 0; c < cols[i]; c++) {
+                long bit = 1L << (r * cols[i] + c);
+                board[r][c] = ((xBits[i] & bit) != 0) ? 'X' : ((oBits[i] & bit) != 0) ? 'O' : ' ';
+            }
+        return board;
+    }
+
+    /***********************************************************
+     * Writes positions to a corpus file.
+     ***********************************************************/
+    public static class Writer implements Closeable {
+        private DataOutputStream out;
+
+        /**
+         * @param append Add to the end of an existing file (if there is one) rather than replacing it
+         **/
+        public Writer(String fileName, boolean append) throws IOException {
+            boolean header = !(append && new File(fileName).length() > 0);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName, append)));
+            if (header) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+        }
+
+        /**
+         * Add a position.
+         * @param turn The player to move
+         * @param result The final disc differential (X - O) of the game
+         **/
+        public synchronized void add(char[][] board, int turn, int result) throws IOException {
+            int rows = board.length;
+            int cols = board[0].length;
+            if (rows * cols > 64) throw new IllegalArgumentException("Corpus boards have at most 64 squares");
+            long x = 0L, o = 0L;
+            for (int r = 0; r < rows; r++)
+                for (int c = 0; c < cols; c++)
+                    if (board[r][c] == 'X') x |= 1L << (r * cols + c);
+                    else if (board[r][c] == 'O') o |= 1L << (r * cols + c);
+            out.writeByte(rows);
+            out.writeByte(cols);
+            out.writeByte(turn);
+            out.writeByte(result);
+            out.writeLong(x);
+            out.writeLong(o);
+        }
+
+        public synchronized void close() throws IOException { out.close(); }
+    }
+}
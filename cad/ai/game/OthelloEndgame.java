@@ -0,0 +1,256 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * OthelloEndgame:
+ *    Solves the last few empty squares of an 8x8 game exactly - the
+ *    search goes all the way to the end of the game.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+/***********************************************************
+ * An exact endgame solver working directly on the two bitboards.
+ *   Scores are the final disc differential for the player to move, the same as
+ *   OthelloGame.computeScore: empty squares left at the end are not counted.
+ *   Moves are ordered
+ *     fastest-first (fewest replies for the opponent) while many squares are empty,
+ *     by parity (squares in a quadrant with an odd number of empties first) near the end.
+ *   The last 4 empties are searched by looking at the empty squares directly
+ *   and the very last one just counts what it flips.
+ *   solve(..., true) only asks win/loss/draw - a null window around 0 - which is much faster.
+ ***********************************************************/
+public class OthelloEndgame {
+    public static final int DEFAULT_EMPTIES = 20;   // Solve once this few squares are empty
+    public static final int MAX_EMPTIES = 30;       // Most the buffers below allow: a position has at most one
+                                                    // move per empty and, with passes, at most twice as many plies
+    private static final int FASTEST_FIRST_EMPTIES = 7;  // Below this, parity ordering is cheaper
+    private static final int TABLE_EMPTIES = 10;      // Only remember positions with more empties than this
+    private static final int INFINITY = 65;           // More than any disc differential
+    private static final long[] QUADRANT = {
+        0x000000000F0F0F0FL, 0x00000000F0F0F0F0L, 0x0F0F0F0F00000000L, 0xF0F0F0F000000000L
+    };
+
+    private TranspositionTable table = new TranspositionTable(4);
+    private TimeManager clock;   // null = never give up
+    private volatile boolean stop;
+    private boolean aborted;
+    private long nodes;
+    private int bestMove;
+    private int[][] moves = new int[64][32];      // Ordered moves at each ply (reused)
+    private long[][] flipped = new long[64][32];  // ... and what each one flips
+    private int[][] keys = new int[64][32];       // ... and its sort key
+    private int[][] small = new int[5][4];        // The last 4 empties (indexed by number of empties)
+
+    /**
+     * The clock to stop by - null = run until solved.  The solver gives up at the soft
+     * limit, leaving the rest of the move's time (up to the hard limit) for a search instead.
+     **/
+    public void setTimeManager(TimeManager clock) { this.clock = clock; }
+
+    /** Ask the solver to give up (from another thread) **/
+    public void stop() { stop = true; }
+
+    /** True if the last solve ran out of time (and its result is meaningless) **/
+    public boolean isAborted() { return aborted; }
+    public int getBestMove() { return bestMove; }
+    public long getNodes() { return nodes; }
+
+    /**
+     * Solve the position for the player owning "own" (who must have a move).
+     * @param wld Only find out win (> 0), draw (0) or loss (< 0)
+     * @return the exact final disc differential for own (or its sign if wld)
+     **/
+    public int solve(long own, long opp, boolean wld) {
+        if (Long.bitCount(~(own | opp)) > MAX_EMPTIES)
+            throw new IllegalArgumentException("Can't solve more than " + MAX_EMPTIES + " empties");
+        nodes = 0;
+        aborted = false;
+        stop = false;
+        bestMove = -1;
+        table.newSearch();
+        int score = (wld) ? search(own, opp, -1, 1, 0) : search(own, opp, -INFINITY, INFINITY, 0);
+        if (wld) score = Integer.signum(score);
+        return score;
+    }
+
+    /**
+     * Count the node and check the clock (every 4096 nodes).
+     **/
+    private boolean outOfTime() {
+        if ((++nodes & 4095) == 0 && (stop || (clock != null && clock.softExpired())))
+            aborted = true;
+        return aborted;
+    }
+
+    /** Final disc differential - empty squares go to nobody **/
+    private static int finalDiff(long own, long opp) {
+        return Long.bitCount(own) - Long.bitCount(opp);
+    }
+
+    /**
+     * Fail-soft negamax to the end of the game.
+     **/
+    private int search(long own, long opp, int alpha, int beta, int ply) {
+        if (outOfTime()) return 0;
+        long empty = ~(own | opp);
+        int n = Long.bitCount(empty);
+        if (n <= 4 && ply > 0) return searchSmall(own, opp, alpha, beta, empty, n);
+
+        long valid = OthelloBitboard.validMoves(own, opp);
+        if (valid == 0L) {
+            // Is this the end of the game?
+            if (OthelloBitboard.validMoves(opp, own) == 0L) return finalDiff(own, opp);
+            return -search(opp, own, -beta, -alpha, ply + 1);  // Pass
+        }
+
+        // Already solved (at least well enough for this window)?
+        long key = 0L;
+        int tableMove = TranspositionTable.NO_MOVE;
+        if (n > TABLE_EMPTIES) {
+            key = hash(own, opp);
+            long entry = table.probe(key);
+            if (entry != 0L) tableMove = TranspositionTable.move(entry);
+            if (entry != 0L && ply > 0) {
+                int score = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT ||
+                    (bound == TranspositionTable.LOWER && score >= beta) ||
+                    (bound == TranspositionTable.UPPER && score <= alpha))
+                    return score;
+            }
+        }
+
+        int count = order(own, opp, valid, empty, n, ply, tableMove);
+        int[] m = moves[ply];
+        long[] f = flipped[ply];
+        int best = -INFINITY;
+        int bestSq = m[0];
+        for (int i = 0; i < count; i++) {
+            long move = 1L << m[i];
+            int score = -search(opp & ~f[i], own | move | f[i], -beta, -Math.max(alpha, best), ply + 1);
+            if (aborted) return 0;
+            if (score > best) {
+                best = score;
+                bestSq = m[i];
+                if (ply == 0) bestMove = m[i];
+                if (best >= beta) break;
+            }
+        }
+        if (n > TABLE_EMPTIES) {
+            int bound = (best <= alpha) ? TranspositionTable.UPPER :
+                (best >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(key, n, bound, best, bestSq);
+        }
+        return best;
+    }
+
+    /**
+     * A 64-bit key for the position (player to move owns "own").
+     *   The midgame search uses OthelloGame's Zobrist key but the solver never builds an OthelloGame.
+     **/
+    private static long hash(long own, long opp) {
+        long h = own * 0x9E3779B97F4A7C15L ^ Long.rotateLeft(opp * 0xC2B2AE3D27D4EB4FL, 31);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Put the moves for this ply in order (the table's best move, then fastest-first or parity)
+     * and return how many there are.
+     **/
+    private int order(long own, long opp, long valid, long empty, int n, int ply, int tableMove) {
+        int[] m = moves[ply];
+        long[] f = flipped[ply];
+        int[] k = keys[ply];
+        int count = 0;
+        for (; valid != 0L; valid &= valid - 1) {
+            int sq = Long.numberOfTrailingZeros(valid);
+            long flips = OthelloBitboard.flips(own, opp, sq);
+            int parity = (Long.bitCount(empty & quadrant(sq)) & 1) == 1 ? 0 : 1;
+            int key;
+            if (n > FASTEST_FIRST_EMPTIES) {
+                long newOwn = own | (1L << sq) | flips;
+                long newOpp = opp & ~flips;
+                key = 2 * Long.bitCount(OthelloBitboard.validMoves(newOpp, newOwn)) + parity;
+            } else
+                key = parity;
+            if (sq == tableMove) key = -1;
+
+            // Insertion sort - there are only a handful of moves
+            int i = count++;
+            for (; i > 0 && k[i-1] > key; i--) {
+                m[i] = m[i-1];
+                f[i] = f[i-1];
+                k[i] = k[i-1];
+            }
+            m[i] = sq;
+            f[i] = flips;
+            k[i] = key;
+        }
+        return count;
+    }
+
+    /** The quadrant mask containing square sq **/
+    private static long quadrant(int sq) {
+        return QUADRANT[((sq >>> 5) << 1) | ((sq >>> 2) & 1)];
+    }
+
+    /**
+     * The last 4 (or fewer) empties: try the empty squares directly, odd quadrants first.
+     **/
+    private int searchSmall(long own, long opp, int alpha, int beta, long empty, int n) {
+        if (n == 0) return finalDiff(own, opp);
+        if (n == 1) return lastMove(own, opp, Long.numberOfTrailingZeros(empty));
+        nodes++;
+
+        // Parity order
+        int[] sq = small[n];
+        int count = 0;
+        for (int odd = 1; odd >= 0; odd--)
+            for (long e = empty; e != 0L; e &= e - 1) {
+                int s = Long.numberOfTrailingZeros(e);
+                if ((Long.bitCount(empty & quadrant(s)) & 1) == odd) sq[count++] = s;
+            }
+
+        int best = -INFINITY;
+        boolean moved = false;
+        for (int i = 0; i < n; i++) {
+            long flips = OthelloBitboard.flips(own, opp, sq[i]);
+            if (flips == 0L) continue;
+            moved = true;
+            long move = 1L << sq[i];
+            int score = -searchSmall(opp & ~flips, own | move | flips, -beta, -Math.max(alpha, best), empty & ~move, n - 1);
+            if (score > best) {
+                best = score;
+                if (best >= beta) return best;
+            }
+        }
+        if (moved) return best;
+
+        // We have to pass - if the opponent can't move either the game is over
+        for (int i = 0; i < n; i++)
+            if (OthelloBitboard.flips(opp, own, sq[i]) != 0L)
+                return -searchSmall(opp, own, -beta, -alpha, empty, n);
+        return finalDiff(own, opp);
+    }
+
+    /**
+     * One empty square left: play it (or let the opponent) and count.
+     **/
+    private int lastMove(long own, long opp, int sq) {
+        nodes++;
+        int discs = Long.bitCount(own) - Long.bitCount(opp);
+        int f = Long.bitCount(OthelloBitboard.flips(own, opp, sq));
+        if (f > 0) return discs + 2 * f + 1;
+        f = Long.bitCount(OthelloBitboard.flips(opp, own, sq));
+        if (f > 0) return discs - 2 * f - 1;
+        return discs;  // Nobody can play it
+    }
+}
@@ -26,9 +26,64 @@ public class OthelloGame implements Game {
         public Action(int r, int c) { row = r; col = c; }
 
         public String toString() { return "" + row + (char) (col+'a'); }
+
+        /** The move written "rc" (e.g. 2b) or null if it isn't one **/
+        public static Action parse(String move) {
+            if (move == null || move.length() != 2) return null;
+            return new Action(move.charAt(0) - '0', move.charAt(1) - 'a');
+        }
     }
     
     private char[][] board;  // A grid of X's and O's and spaces.
+    private boolean bitboard;  // True if the board is 8x8 and mirrored in homeBits/awayBits
+    private boolean gridOnly = false;  // Never use the bitboards (see setGridOnly)
+    private long homeBits;     // 8x8 only: the X pieces, bit r*8+c (see OthelloBitboard)
+    private long awayBits;     // 8x8 only: the O pieces
+    private long hash;         // Zobrist key of the pieces on the board (see getHash)
+
+    // Undo stack for makeMove/unmakeMove.  Preallocated so a search allocates nothing.
+    private int undoTop = 0;        // Number of moves on the stack
+    private int[] undoSquare;       // Square played (-1 for a pass)
+    private int[] undoTurn;         // Whose turn it was before the move
+    private long[] undoFlips;       // 8x8: the pieces that were flipped
+    private int[] undoCellStart;    // Smaller boards: where the move's flipped cells start in undoCells
+    private int[] undoCells;        // Smaller boards: the flipped cells (r*cols+c)
+    private int undoCellTop = 0;
+    private long[] undoHash;        // Zobrist key before the move
+
+    // Evaluation features, kept up to date as moves are processed, made and unmade (see syncFeatures)
+    private int[][] squareWeights;  // 8x8 weights to fit to the board (null = don't sum weights)
+    private int[] cellWeight;       // Weight of each cell r*cols+c
+    private boolean[] corner;       // Is the cell a corner
+    private int[] neighbourRow;     // The neighbours of cell i are entries neighbourStart[i] .. neighbourStart[i+1]-1
+    private int[] neighbourCol;
+    private int[] neighbourCell;
+    private int[] neighbourStart;
+    private int[] emptyNeighbours;  // Number of empty cells next to each cell
+    private int featureCols;        // Width of the board the tables above were built for
+    private int[] discCount = new int[2];
+    private int[] weightSum = new int[2];
+    private int[] cornerCount = new int[2];
+    private int[] frontierCount = new int[2];  // Discs next to at least one empty cell
+    private boolean trackPatterns;  // Keep the OthelloPatterns indices up to date too
+    private OthelloPatterns.Layout patternLayout;
+    private int[] patternIndex;     // Base-3 index of each pattern in patternLayout
+
+    // Zobrist keys: one random number per (player, cell) with cell = r*cols+c, plus one for Away to move.
+    // A fixed seed keeps the keys the same from run to run so they can be stored in files.
+    private static final int ZOBRIST_CELLS = 1024;  // Enough for boards up to 32x32
+    private static final long[][] ZOBRIST = new long[2][ZOBRIST_CELLS];
+    private static final long[] ZOBRIST_FLIP = new long[ZOBRIST_CELLS];  // X <-> O on a cell
+    private static final long ZOBRIST_TURN;
+    static {
+        Random ran = new Random(0x07E11011L);
+        for (int i = 0; i < ZOBRIST_CELLS; i++) {
+            ZOBRIST[0][i] = ran.nextLong();
+            ZOBRIST[1][i] = ran.nextLong();
+            ZOBRIST_FLIP[i] = ZOBRIST[0][i] ^ ZOBRIST[1][i];
+        }
+        ZOBRIST_TURN = ran.nextLong();
+    }
     private int turn;    // Whose turn is it 0 or 1.
     private int player; // Which "turn" the player is (from Client side)
     private boolean changed;   // Has the state changed (since last transmission)
@@ -79,6 +134,7 @@ public class OthelloGame implements Game {
             board[midA-1][midB-1] = 'O';
             board[midA][midB-1] = 'X';
             board[midA-1][midB] = 'X';
+            syncBits();
 	    
             turn = 0;  // X goes first
         } else {
@@ -102,15 +158,13 @@ public class OthelloGame implements Game {
     // Done internally since checked after every move - no need to do it all the time.
     public synchronized boolean computeWinner() {
         // First determine if the game is done (when no more moves are possible for either team)
-        ArrayList<Action> actionList = getActions(turn);
-        if (actionList.size() > 0) {
+        if (hasValidMove(turn)) {
             // There are actions available
             return false;
         } else {
             // Try it for the other player
             turn ^= 1;
-            actionList = getActions(turn);
-            if (actionList.size() > 0) {
+            if (hasValidMove(turn)) {
                 // There are actions available
                 return false;
             } else {
@@ -140,14 +194,20 @@ public class OthelloGame implements Game {
         homeScore = 0;
         awayScore = 0;
         int emptyScore = 0;
-        for (int r = 0; r < board.length; r++)
-            for (int c = 0; c < board[r].length; c++)
-                if (board[r][c] == 'X')
-                    homeScore++;
-                else if (board[r][c] == 'O')
-                    awayScore++;
-                else
-                    emptyScore++;  // Empty Slots
+        if (bitboard) {
+            homeScore = Long.bitCount(homeBits);
+            awayScore = Long.bitCount(awayBits);
+            emptyScore = OthelloBitboard.SQUARES - homeScore - awayScore;
+        } else {
+            for (int r = 0; r < board.length; r++)
+                for (int c = 0; c < board[r].length; c++)
+                    if (board[r][c] == 'X')
+                        homeScore++;
+                    else if (board[r][c] == 'O')
+                        awayScore++;
+                    else
+                        emptyScore++;  // Empty Slots
+        }
         if (forfeit == 0) {
             homeScore += emptyScore;  // Home gets empty slots
             if (homeScore < awayScore) homeScore = awayScore+1;
@@ -201,6 +261,7 @@ public class OthelloGame implements Game {
             for (int i = 3, r = 0; r < board.length; r++)
                 for (int c = 0; c < board[0].length; c++, i++)
                     board[r][c] = pieces[i].charAt(0);
+            syncBits();
 	    
             if (verbose > 0) displayState();
         } catch (NumberFormatException e) {
@@ -216,8 +277,210 @@ public class OthelloGame implements Game {
         for (int i = 0; i < this.board.length; i++)
             this.board[i] = newBoard[i].clone();
         this.turn = turn;
+        syncBits();
+    }
+
+    /**
+     * Rebuild the Zobrist key and the bitboards (8x8 boards only) from the char grid.
+     * Called whenever the grid is replaced wholesale.
+     **/
+    private void syncBits() {
+        bitboard = !gridOnly && board.length == OthelloBitboard.SIZE && board[0].length == OthelloBitboard.SIZE;
+        homeBits = 0L;
+        awayBits = 0L;
+        undoTop = 0;   // The old moves no longer apply to this board
+        undoCellTop = 0;
+        hash = computeHash(board, 0);
+        syncFeatures();
+        if (!bitboard) return;
+        for (int r = 0; r < OthelloBitboard.SIZE; r++)
+            for (int c = 0; c < OthelloBitboard.SIZE; c++)
+                if (board[r][c] == 'X')
+                    homeBits |= 1L << OthelloBitboard.square(r, c);
+                else if (board[r][c] == 'O')
+                    awayBits |= 1L << OthelloBitboard.square(r, c);
     }
     
+    /**
+     * Recompute the evaluation features from scratch (the board was replaced wholesale).
+     **/
+    private void syncFeatures() {
+        int rows = board.length;
+        int cols = board[0].length;
+        int cells = rows * cols;
+        if (emptyNeighbours == null || emptyNeighbours.length != cells || featureCols != cols) {
+            // New board size - work out the corners and neighbours once
+            featureCols = cols;
+            corner = new boolean[cells];
+            corner[0] = corner[cols - 1] = corner[cells - cols] = corner[cells - 1] = true;
+            neighbourStart = new int[cells + 1];
+            neighbourRow = new int[8 * cells];
+            neighbourCol = new int[8 * cells];
+            neighbourCell = new int[8 * cells];
+            int n = 0;
+            for (int r = 0; r < rows; r++)
+                for (int c = 0; c < cols; c++) {
+                    neighbourStart[r * cols + c] = n;
+                    for (int dr = -1; dr <= 1; dr++)
+                        for (int dc = -1; dc <= 1; dc++)
+                            if ((dr != 0 || dc != 0) && r+dr >= 0 && r+dr < rows && c+dc >= 0 && c+dc < cols) {
+                                neighbourRow[n] = r + dr;
+                                neighbourCol[n] = c + dc;
+                                neighbourCell[n++] = (r + dr) * cols + c + dc;
+                            }
+                }
+            neighbourStart[cells] = n;
+            emptyNeighbours = new int[cells];
+            cellWeight = (squareWeights == null) ? new int[cells] : fitSquareWeights(squareWeights, rows, cols);
+            patternLayout = trackPatterns ? OthelloPatterns.layout(rows, cols) : null;
+        }
+        if (patternLayout != null) patternIndex = patternLayout.indices(board);
+
+        for (int p = 0; p < 2; p++)
+            discCount[p] = weightSum[p] = cornerCount[p] = frontierCount[p] = 0;
+        for (int r = 0; r < rows; r++)
+            for (int c = 0; c < cols; c++) {
+                int cell = r * cols + c;
+                int empty = 0;
+                for (int i = neighbourStart[cell]; i < neighbourStart[cell + 1]; i++)
+                    if (board[neighbourRow[i]][neighbourCol[i]] == ' ') empty++;
+                emptyNeighbours[cell] = empty;
+                if (board[r][c] == ' ') continue;
+                int p = (board[r][c] == 'X') ? 0 : 1;
+                discCount[p]++;
+                weightSum[p] += cellWeight[cell];
+                if (corner[cell]) cornerCount[p]++;
+                if (empty > 0) frontierCount[p]++;
+            }
+    }
+
+    /**
+     * Player p's piece was just placed on cell (before: empty).
+     **/
+    private void placeFeatures(int p, int cell) {
+        for (int i = neighbourStart[cell]; i < neighbourStart[cell + 1]; i++) {
+            int n = neighbourCell[i];
+            if (--emptyNeighbours[n] == 0) {
+                char owner = board[neighbourRow[i]][neighbourCol[i]];
+                if (owner != ' ') frontierCount[owner == 'X' ? 0 : 1]--;  // No longer on the frontier
+            }
+        }
+        discCount[p]++;
+        weightSum[p] += cellWeight[cell];
+        if (corner[cell]) cornerCount[p]++;
+        if (emptyNeighbours[cell] > 0) frontierCount[p]++;
+        if (patternLayout != null) updatePatterns(cell, p + 1);
+    }
+
+    /**
+     * Player p's piece was just taken back off cell (after: empty).
+     **/
+    private void unplaceFeatures(int p, int cell) {
+        for (int i = neighbourStart[cell]; i < neighbourStart[cell + 1]; i++) {
+            int n = neighbourCell[i];
+            if (emptyNeighbours[n]++ == 0) {
+                char owner = board[neighbourRow[i]][neighbourCol[i]];
+                if (owner != ' ') frontierCount[owner == 'X' ? 0 : 1]++;
+            }
+        }
+        discCount[p]--;
+        weightSum[p] -= cellWeight[cell];
+        if (corner[cell]) cornerCount[p]--;
+        if (emptyNeighbours[cell] > 0) frontierCount[p]--;
+        if (patternLayout != null) updatePatterns(cell, -(p + 1));
+    }
+
+    /**
+     * The piece on cell was flipped to player p (from the other player).
+     **/
+    private void flipFeatures(int p, int cell) {
+        int q = p ^ 1;
+        discCount[p]++;
+        discCount[q]--;
+        weightSum[p] += cellWeight[cell];
+        weightSum[q] -= cellWeight[cell];
+        if (corner[cell]) { cornerCount[p]++; cornerCount[q]--; }
+        if (emptyNeighbours[cell] > 0) { frontierCount[p]++; frontierCount[q]--; }
+        if (patternLayout != null) updatePatterns(cell, p - q);  // Digit q+1 becomes p+1
+    }
+
+    /**
+     * The base-3 digit of cell changed by delta in every pattern it is in.
+     **/
+    private void updatePatterns(int cell, int delta) {
+        int[] instances = patternLayout.cellInstances[cell];
+        int[] powers = patternLayout.cellPowers[cell];
+        for (int i = 0; i < instances.length; i++)
+            patternIndex[instances[i]] += delta * powers[i];
+    }
+
+    /**
+     * Fit an 8x8 table of square weights to a rows x cols board: each cell gets the
+     * weight of the 8x8 square the same distance from the nearest edges.
+     * @return the weights of cell r*cols+c
+     **/
+    public static int[] fitSquareWeights(int[][] weights, int rows, int cols) {
+        int[] result = new int[rows * cols];
+        for (int r = 0; r < rows; r++)
+            for (int c = 0; c < cols; c++)
+                result[r * cols + c] = weights[fit(r, rows, weights.length)][fit(c, cols, weights[0].length)];
+        return result;
+    }
+
+    /** Position i of n mapped onto a line of length m, keeping the distance to the nearer edge **/
+    private static int fit(int i, int n, int m) {
+        return (i < n / 2) ? Math.min(i, m / 2 - 1) : m - 1 - Math.min(n - 1 - i, m / 2 - 1);
+    }
+
+    /**
+     * Sum these square weights (8x8 - fitted to smaller boards) for each player as moves are made.
+     **/
+    public void setSquareWeights(int[][] weights) {
+        squareWeights = weights;
+        emptyNeighbours = null;  // Refit on the next sync
+        if (board != null) syncFeatures();
+    }
+
+    /**
+     * Also keep the index of every OthelloPatterns pattern up to date (for the pattern evaluation).
+     **/
+    public void setPatternTracking(boolean on) {
+        trackPatterns = on;
+        emptyNeighbours = null;  // Rebuild on the next sync
+        if (board != null) syncFeatures();
+    }
+
+    /** The pattern layout for this board and each pattern's index (null unless tracking patterns) **/
+    public OthelloPatterns.Layout getPatternLayout() { return patternLayout; }
+    public int[] getPatternIndex() { return patternIndex; }
+
+    /** Evaluation features for player - all kept up to date incrementally **/
+    public int getDiscCount(int player) { return discCount[player]; }
+    public int getWeightSum(int player) { return weightSum[player]; }
+    public int getCornerCount(int player) { return cornerCount[player]; }
+    public int getFrontierCount(int player) { return frontierCount[player]; }
+
+    /**
+     * The Zobrist key of a grid with player turn to move, computed from scratch.
+     **/
+    public static long computeHash(char[][] board, int turn) {
+        long h = (turn == 1) ? ZOBRIST_TURN : 0L;
+        int cols = board[0].length;
+        for (int r = 0; r < board.length; r++)
+            for (int c = 0; c < cols; c++)
+                if (board[r][c] == 'X')
+                    h ^= ZOBRIST[0][r * cols + c];
+                else if (board[r][c] == 'O')
+                    h ^= ZOBRIST[1][r * cols + c];
+        return h;
+    }
+
+    /**
+     * 64-bit Zobrist key of the current position (pieces and side to move).
+     *   Kept up to date a few XORs at a time as moves are processed, made and unmade.
+     **/
+    public long getHash() { return (turn == 1) ? hash ^ ZOBRIST_TURN : hash; }
+
     /**
      * Display the current state.  We'll use a text-based version here.
      **/
@@ -310,11 +573,8 @@ public class OthelloGame implements Game {
                     return "ERROR: This location is already taken!";
 		
                 // Process move (internally)
-                if (!processMove(p, row, col))
+                if (!applyMove(p, new Action(row, col)))
                     return "ERROR: Invalid move: " + move;
-                changed = true;
-                turn ^= 1;   // Switch turn from 0 to 1 or 1 to 0
-                computeWinner();
                 return "MESSAGE:Placed mark at location " + move + ".";
             } catch (Exception e) {
                 return "ERROR:Could not understand your move.  Please make sure you just pass an integer string (0-8).";
@@ -322,6 +582,23 @@ public class OthelloGame implements Game {
         }
     }   
 
+    /**
+     * Player p plays a - the typed version of processMove(p, String).
+     *   The turn passes to the other player (or back, if they have no move)
+     *   and the winner is decided once neither can move.
+     * @return false (and nothing changes) if it isn't p's turn or a isn't a valid move
+     **/
+    public boolean applyMove(int p, Action a) {
+        if (p != turn || a == null || a.row < 0 || a.row >= board.length ||
+            a.col < 0 || a.col >= board[a.row].length)
+            return false;
+        if (!processMove(p, a.row, a.col)) return false;
+        changed = true;
+        turn ^= 1;   // Switch turn from 0 to 1 or 1 to 0
+        computeWinner();
+        return true;
+    }
+
     /**
      * Place piece at provided location
      **/
@@ -329,6 +606,29 @@ public class OthelloGame implements Game {
         char symbol = (p == 0) ? 'X' : 'O';
 	
         if (board[row][col] != ' ') return false;  // Spot not available
+        if (bitboard) {
+            int sq = OthelloBitboard.square(row, col);
+            long own = (p == 0) ? homeBits : awayBits;
+            long opp = (p == 0) ? awayBits : homeBits;
+            long flips = OthelloBitboard.flips(own, opp, sq);
+            if (flips == 0L) return false;  // Nothing to flip - invalid move
+            own |= flips | (1L << sq);
+            opp &= ~flips;
+            if (p == 0) { homeBits = own; awayBits = opp; } else { homeBits = opp; awayBits = own; }
+
+            // Mirror the flips onto the grid (for display and the AI's char[][] view)
+            hash ^= ZOBRIST[p][sq];
+            for (; flips != 0L; flips &= flips - 1) {
+                int f = Long.numberOfTrailingZeros(flips);
+                board[OthelloBitboard.row(f)][OthelloBitboard.col(f)] = symbol;
+                hash ^= ZOBRIST_FLIP[f];
+                flipFeatures(p, f);
+            }
+            board[row][col] = symbol;
+            placeFeatures(p, sq);
+            return true;
+        }
+
         boolean flipped = false;  // Have we flipped ANY pieces?
 
         // Check if we can flip in every one of the 8 directions
@@ -341,10 +641,187 @@ public class OthelloGame implements Game {
         flipped |= flipDirection(symbol, row, col, +1, -1, true);   // SW
         flipped |= flipDirection(symbol, row, col, +1, +1, true);   // SE
 
-        if (flipped) board[row][col] = symbol;  // True - place the actual piece
+        if (flipped) {
+            board[row][col] = symbol;  // True - place the actual piece
+            hash ^= ZOBRIST[p][row * board[row].length + col];
+            syncFeatures();  // Not worth tracking flipDirection's flips one at a time
+        }
         return flipped;  // True if ANY Of the directions were true.
     }
 
+    /**
+     * Place piece for player p at (row,col) and pass the turn to the opponent.
+     * Unlike processMove, the flipped pieces are recorded so unmakeMove can put them back.
+     * @return false (and nothing changes) if the move is not valid.
+     **/
+    public boolean makeMove(int p, int row, int col) {
+        if (board[row][col] != ' ') return false;  // Spot not available
+        ensureUndoStack();
+        char symbol = (p == 0) ? 'X' : 'O';
+        long oldHash = hash;
+
+        if (bitboard) {
+            int sq = OthelloBitboard.square(row, col);
+            long own = (p == 0) ? homeBits : awayBits;
+            long opp = (p == 0) ? awayBits : homeBits;
+            long flips = OthelloBitboard.flips(own, opp, sq);
+            if (flips == 0L) return false;
+            own |= flips | (1L << sq);
+            opp &= ~flips;
+            if (p == 0) { homeBits = own; awayBits = opp; } else { homeBits = opp; awayBits = own; }
+            hash ^= ZOBRIST[p][sq];
+            for (long f = flips; f != 0L; f &= f - 1) {
+                int b = Long.numberOfTrailingZeros(f);
+                board[OthelloBitboard.row(b)][OthelloBitboard.col(b)] = symbol;
+                hash ^= ZOBRIST_FLIP[b];
+                flipFeatures(p, b);
+            }
+            board[row][col] = symbol;
+            placeFeatures(p, sq);
+            undoFlips[undoTop] = flips;
+        } else {
+            undoCellStart[undoTop] = undoCellTop;
+            flipAndRecord(symbol, row, col, -1,  0);   // NORTH
+            flipAndRecord(symbol, row, col, +1,  0);   // SOUTH
+            flipAndRecord(symbol, row, col,  0, -1);   // WEST
+            flipAndRecord(symbol, row, col,  0, +1);   // EAST
+            flipAndRecord(symbol, row, col, -1, -1);   // NW
+            flipAndRecord(symbol, row, col, -1, +1);   // NE
+            flipAndRecord(symbol, row, col, +1, -1);   // SW
+            flipAndRecord(symbol, row, col, +1, +1);   // SE
+            if (undoCellTop == undoCellStart[undoTop]) return false;  // Nothing flipped
+            for (int i = undoCellStart[undoTop]; i < undoCellTop; i++)
+                flipFeatures(p, undoCells[i]);
+            board[row][col] = symbol;
+            hash ^= ZOBRIST[p][row * board[0].length + col];
+            placeFeatures(p, row * board[0].length + col);
+        }
+        undoSquare[undoTop] = row * board[0].length + col;
+        undoTurn[undoTop] = turn;
+        undoHash[undoTop] = oldHash;
+        undoTop++;
+        turn = p ^ 1;
+        return true;
+    }
+
+    /**
+     * Same as makeMove(p, row, col) with the square numbered r*cols+c (see getValidMoves)
+     **/
+    public boolean makeMove(int p, int square) {
+        return makeMove(p, square / board[0].length, square % board[0].length);
+    }
+
+    /**
+     * Player p has no move and passes the turn.  Also undone by unmakeMove.
+     **/
+    public void makePass(int p) {
+        ensureUndoStack();
+        undoSquare[undoTop] = -1;
+        undoTurn[undoTop] = turn;
+        undoCellStart[undoTop] = undoCellTop;
+        undoFlips[undoTop] = 0L;
+        undoHash[undoTop] = hash;
+        undoTop++;
+        turn = p ^ 1;
+    }
+
+    /**
+     * Take back the last makeMove (or makePass).
+     **/
+    public void unmakeMove() {
+        undoTop--;
+        turn = undoTurn[undoTop];
+        hash = undoHash[undoTop];
+        int sq = undoSquare[undoTop];
+        if (sq < 0) return;  // A pass - nothing on the board to restore
+
+        int cols = board[0].length;
+        char symbol = board[sq / cols][sq % cols];
+        char other = (symbol == 'X') ? 'O' : 'X';
+        int p = (symbol == 'X') ? 0 : 1;
+        board[sq / cols][sq % cols] = ' ';
+        unplaceFeatures(p, sq);
+        if (bitboard) {
+            long flips = undoFlips[undoTop];
+            long placed = 1L << sq;
+            if (symbol == 'X') {
+                homeBits &= ~(flips | placed);
+                awayBits |= flips;
+            } else {
+                awayBits &= ~(flips | placed);
+                homeBits |= flips;
+            }
+            for (; flips != 0L; flips &= flips - 1) {
+                int b = Long.numberOfTrailingZeros(flips);
+                board[OthelloBitboard.row(b)][OthelloBitboard.col(b)] = other;
+                flipFeatures(p ^ 1, b);
+            }
+        } else {
+            int start = undoCellStart[undoTop];
+            for (int i = start; i < undoCellTop; i++) {
+                board[undoCells[i] / cols][undoCells[i] % cols] = other;
+                flipFeatures(p ^ 1, undoCells[i]);
+            }
+            undoCellTop = start;
+        }
+    }
+
+    /**
+     * How many moves are on the undo stack
+     **/
+    public int getUndoDepth() { return undoTop; }
+
+    /**
+     * Fill moves with the valid squares (r*cols+c) for player.
+     * @return the number of moves stored
+     **/
+    public int getMoves(int player, int[] moves) {
+        int n = 0;
+        for (long m = getValidMoves(player); m != 0L; m &= m - 1)
+            moves[n++] = Long.numberOfTrailingZeros(m);
+        return n;
+    }
+
+    /** Board dimensions **/
+    public int getRows() { return board.length; }
+    public int getCols() { return board[0].length; }
+
+    /**
+     * Make sure the undo stack fits the current board.
+     *   Every square can be filled once and each move can follow at most one pass.
+     **/
+    private void ensureUndoStack() {
+        int cells = board.length * board[0].length;
+        if (undoSquare != null && undoSquare.length == 2 * cells + 2) return;
+        undoSquare = new int[2 * cells + 2];
+        undoTurn = new int[undoSquare.length];
+        undoFlips = new long[undoSquare.length];
+        undoCellStart = new int[undoSquare.length];
+        undoHash = new long[undoSquare.length];
+        undoCells = new int[bitboard ? 0 : cells * cells];
+        undoTop = 0;
+        undoCellTop = 0;
+    }
+
+    /**
+     * Flip the pieces in the given direction (if capped by symbol), recording them on the undo stack.
+     **/
+    private void flipAndRecord(char symbol, int row, int col, int dr, int dc) {
+        int cols = board[0].length;
+        int r, c;
+        for (r = row+dr, c = col+dc; r >= 0 && r < board.length && c >= 0 && c < cols && board[r][c] != ' ';
+             r += dr, c += dc) {
+            if (board[r][c] == symbol) {
+                for (r -= dr, c -= dc; r != row || c != col; r -= dr, c -= dc) {
+                    board[r][c] = symbol;
+                    undoCells[undoCellTop++] = r * cols + c;
+                    hash ^= ZOBRIST_FLIP[r * cols + c];
+                }
+                return;
+            }
+        }
+    }
+
     /**
      * Get the various (valid) actions that are possible 
      * @param player - which player is moving
@@ -353,6 +830,15 @@ public class OthelloGame implements Game {
     public ArrayList<Action> getActions(int player) {
         ArrayList<Action> result = new ArrayList<Action>();
         char symbol = (player == 0) ? 'X' : 'O';
+
+        if (bitboard) {
+            // Moves come out in square order - the same row-major order as the scan below
+            for (long moves = getValidMoves(player); moves != 0L; moves &= moves - 1) {
+                int sq = Long.numberOfTrailingZeros(moves);
+                result.add(new Action(OthelloBitboard.row(sq), OthelloBitboard.col(sq)));
+            }
+            return result;
+        }
 	
         // Go through EVERY spot on the board
         for (int r = 0; r < board.length; r++)
@@ -372,6 +858,11 @@ public class OthelloGame implements Game {
      * @returns True if this location creates at least ONE flip option.
      **/
     public boolean isValidMove(char symbol, int row, int col) {
+        if (bitboard) {
+            long own = (symbol == 'X') ? homeBits : awayBits;
+            long opp = (symbol == 'X') ? awayBits : homeBits;
+            return OthelloBitboard.flips(own, opp, OthelloBitboard.square(row, col)) != 0L;
+        }
         return
             board[row][col] == ' ' &&       // Space is open
             (flipDirection(symbol, row, col, -1,  0, false) ||   // NORTH
@@ -384,6 +875,56 @@ public class OthelloGame implements Game {
              flipDirection(symbol, row, col, +1, +1, false));
     }
 
+    /**
+     * The valid moves for player as a mask of squares.
+     *   On 8x8 boards this is the bitboard move generator; square (r,c) is bit r*8+c.
+     *   Smaller boards are scanned, using bit r*cols+c instead.
+     **/
+    public long getValidMoves(int player) {
+        if (bitboard)
+            return (player == 0) ? OthelloBitboard.validMoves(homeBits, awayBits)
+                                 : OthelloBitboard.validMoves(awayBits, homeBits);
+        char symbol = (player == 0) ? 'X' : 'O';
+        long result = 0L;
+        for (int r = 0; r < board.length; r++)
+            for (int c = 0; c < board[r].length; c++)
+                if (isValidMove(symbol, r, c))
+                    result |= 1L << (r * board[r].length + c);
+        return result;
+    }
+
+    /**
+     * Does player have at least one valid move?
+     **/
+    public boolean hasValidMove(int player) {
+        if (bitboard) return getValidMoves(player) != 0L;
+        char symbol = (player == 0) ? 'X' : 'O';
+        for (int r = 0; r < board.length; r++)
+            for (int c = 0; c < board[r].length; c++)
+                if (isValidMove(symbol, r, c)) return true;
+        return false;
+    }
+
+    /**
+     * The pieces of player as a bitboard (8x8 boards only, 0 otherwise)
+     **/
+    public long getPieces(int player) { return (player == 0) ? homeBits : awayBits; }
+
+    /**
+     * Is this game using the 8x8 bitboard engine?
+     **/
+    public boolean isBitboard() { return bitboard; }
+
+    /**
+     * Use the char[][] engine even on an 8x8 board (e.g. to check the bitboards against it).
+     *   Like updateState, this clears the undo stack.
+     **/
+    public synchronized void setGridOnly(boolean gridOnly) {
+        this.gridOnly = gridOnly;
+        undoSquare = null;  // The undo stack records flips differently for the two engines
+        syncBits();
+    }
+
     /**
      * Try to flip the pieces in the given direction
      * @param flip True if it should FLIP, False if it should just SEE if it can flip
@@ -399,6 +940,7 @@ public class OthelloGame implements Game {
                     // Flip the ones over between the two (if any!)
                     for (r -= dr, c -= dc; r != row || c != col; r -= dr, c -= dc) {
                         board[r][c] = symbol;
+                        hash ^= ZOBRIST_FLIP[r * board[r].length + c];
                     }
                 return count > 0;
             }
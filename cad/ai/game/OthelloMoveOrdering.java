@@ -0,0 +1,120 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * OthelloMoveOrdering:
+ *    Decides which moves the alpha-beta search tries first - the sooner
+ *    the best move is tried the sooner the rest are cut off.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+/***********************************************************
+ * The move ordering pipeline for OthelloSearch (one per search thread).
+ *   1. the transposition table's best move
+ *   2. the two killer moves for this ply (moves that caused a cutoff in a sibling)
+ *   3. the rest by history (how often the move caused a cutoff anywhere, weighted by depth)
+ *      with the static square weights breaking ties.  Near the root, where a
+ *      better order saves the most, the opponent's mobility after the move is used
+ *      instead (fewest replies first).
+ *   Also counts how often the cutoff came from the first move tried - the closer
+ *   to 100% the better the ordering.
+ ***********************************************************/
+public class OthelloMoveOrdering {
+    public static final int MOBILITY_DEPTH = 4;  // Remaining depth at which mobility ordering pays off
+    private static final int TT_KEY = 1 << 30;
+    private static final int KILLER_KEY = 1 << 29;
+
+    private int[] squareWeight;   // Static weight of each square (weightedScores fitted to the board)
+    private int[][] history;      // [player][square]
+    private int[][] killers;      // [ply][2]
+    private int[][] keys;         // Sort keys at each ply (reused)
+    private long cutoffs;         // Nodes that failed high (or low)
+    private long firstCutoffs;    // ... because of the first move tried
+
+    /**
+     * @param weights The 8x8 static square weights (e.g. OthelloAlphaBetaAI.weightedScores)
+     **/
+    public OthelloMoveOrdering(int[][] weights, int rows, int cols) {
+        int cells = rows * cols;
+        squareWeight = OthelloGame.fitSquareWeights(weights, rows, cols);
+        history = new int[2][cells];
+        killers = new int[2 * cells + 2][2];
+        keys = new int[2 * cells + 2][cells];
+        newSearch();
+    }
+
+    /** True if this ordering was built for a board with this many squares **/
+    public boolean fits(int cells) { return squareWeight.length == cells; }
+
+    /**
+     * Start a new search: the killers are forgotten and the history fades
+     * (it is still a good guess for the next move).
+     **/
+    public void newSearch() {
+        for (int[] k : killers) { k[0] = -1; k[1] = -1; }
+        for (int[] h : history)
+            for (int i = 0; i < h.length; i++) h[i] >>= 1;
+        cutoffs = 0;
+        firstCutoffs = 0;
+    }
+
+    /**
+     * Sort the moves (squares) for the player to move on g, best first.
+     * @param depth Remaining depth of the search at this node
+     * @param ttMove The transposition table's best move (or TranspositionTable.NO_MOVE)
+     **/
+    public void order(OthelloGame g, int turn, int[] moves, int count, int ply, int depth, int ttMove) {
+        int[] k = keys[ply];
+        int[] killer = killers[ply];
+        boolean mobility = depth >= MOBILITY_DEPTH;
+        for (int i = 0; i < count; i++) {
+            int sq = moves[i];
+            int key;
+            if (sq == ttMove) key = TT_KEY;
+            else if (sq == killer[0]) key = KILLER_KEY + 1;
+            else if (sq == killer[1]) key = KILLER_KEY;
+            else if (mobility) {
+                g.makeMove(turn, sq);
+                int replies = Long.bitCount(g.getValidMoves(1 - turn));
+                g.unmakeMove();
+                key = squareWeight[sq] - 16 * replies;
+            } else
+                key = (history[turn][sq] << 8) + squareWeight[sq];
+
+            // Insertion sort (highest key first) - there are only a handful of moves
+            int j = i;
+            for (; j > 0 && k[j-1] < key; j--) {
+                moves[j] = moves[j-1];
+                k[j] = k[j-1];
+            }
+            moves[j] = sq;
+            k[j] = key;
+        }
+    }
+
+    /**
+     * The move (the index-th one tried) caused a cutoff: remember it.
+     **/
+    public void cutoff(int turn, int sq, int ply, int depth, int index) {
+        cutoffs++;
+        if (index == 0) firstCutoffs++;
+        int[] killer = killers[ply];
+        if (killer[0] != sq) {
+            killer[1] = killer[0];
+            killer[0] = sq;
+        }
+        history[turn][sq] += depth * depth;
+        if (history[turn][sq] > (1 << 20))  // Keep the keys well inside an int
+            for (int[] h : history)
+                for (int i = 0; i < h.length; i++) h[i] >>= 1;
+    }
+
+    public long getCutoffs() { return cutoffs; }
+    public long getFirstCutoffs() { return firstCutoffs; }
+}
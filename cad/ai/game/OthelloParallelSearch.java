@@ -0,0 +1,300 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * OthelloParallelSearch:
+ *    A deterministic parallel alpha-beta search (Young Brothers Wait)
+ *    that splits the work at the root and at PV nodes.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***********************************************************
+ * Young Brothers Wait search on a ForkJoinPool.
+ *   At the root and at PV nodes (first child of a PV node) the first child
+ *   is searched alone.  Once its score is known the remaining siblings are
+ *   searched in parallel.  Each sibling starts with the best bound found so far,
+ *   and a cutoff in one sibling stops the others.
+ *
+ *   The search is fail-hard and uses no transposition table, so the score of
+ *   every node is clamp(minimax value, alpha, beta) however the tasks are
+ *   scheduled.  The root keeps the highest score and breaks ties by the order
+ *   of the root moves, so the same position and depth always give the same move.
+ *   (Only the node counts change from run to run.)
+ ***********************************************************/
+public class OthelloParallelSearch {
+    private static final int INFINITY = 1000000;
+    private static final int MIN_SPLIT_DEPTH = 3;  // Shallower nodes are not worth a task
+
+    private OthelloAlphaBetaAI ai;  // Supplies the evaluation function
+    private ForkJoinPool pool;
+    private int player;             // Whose point of view the evaluation scores from
+    private char[][] rootBoard;
+    private AtomicLong nodes = new AtomicLong();
+    private AtomicLong leaves = new AtomicLong();   // Added by each task when it is done
+    private AtomicLong cutoffs = new AtomicLong();
+    private AtomicLong firstCutoffs = new AtomicLong();  // ... by the eldest brother
+    private int bestScore;          // Root result: best score, and the index of its move
+    private int bestIndex;
+
+    /**
+     * @param threads Parallelism of the ForkJoinPool
+     **/
+    public OthelloParallelSearch(OthelloAlphaBetaAI ai, int threads) {
+        this.ai = ai;
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+    }
+
+    /** Stop the pool's threads **/
+    public void shutdown() { pool.shutdownNow(); }
+
+    public long getNodes() { return nodes.get(); }
+    public long getLeaves() { return leaves.get(); }
+    public long getCutoffs() { return cutoffs.get(); }
+    public long getFirstCutoffs() { return firstCutoffs.get(); }
+    public int getBestScore() { return bestScore; }
+
+    /**
+     * Search every root move to the given depth.
+     * @param rootMoves The moves (squares) to choose from - ties go to the earliest
+     * @return the best move (square)
+     **/
+    public int search(int player, char[][] board, int[] rootMoves, int count, int depth) {
+        this.player = player;
+        this.rootBoard = board;
+        nodes.set(0);
+        leaves.set(0);
+        cutoffs.set(0);
+        firstCutoffs.set(0);
+        pool.invoke(new RecursiveAction() {  // Every task has to run inside the pool
+                protected void compute() {
+                    // The eldest brother first (alone)
+                    Worker w = new Worker(null);
+                    w.game.updateState(player, board);
+                    w.game.makeMove(player, rootMoves[0]);
+                    w.ply = 1;
+                    bestScore = -w.negamax(-INFINITY, INFINITY, depth - 1, 1 - player, true);
+                    bestIndex = 0;
+                    w.done();
+
+                    // Then the rest in parallel
+                    ArrayList<RootTask> tasks = new ArrayList<RootTask>();
+                    for (int i = 1; i < count; i++)
+                        tasks.add(new RootTask(rootMoves[i], i, depth));
+                    invokeAll(tasks);
+                }
+            });
+        return rootMoves[bestIndex];
+    }
+
+    /**
+     * The bound a root move has to beat: the best score so far, or just equal
+     * it if the move comes before the current best one.
+     **/
+    private synchronized int rootAlpha(int index) {
+        return index < bestIndex ? bestScore - 1 : bestScore;
+    }
+
+    /** Record a root move's score if it beats the best one (higher score, or same score and earlier) **/
+    private synchronized void rootResult(int index, int score) {
+        if (score > bestScore || (score == bestScore && index < bestIndex)) {
+            bestScore = score;
+            bestIndex = index;
+        }
+    }
+
+    /***********************************************************
+     * Searches one root move (other than the first).
+     ***********************************************************/
+    private class RootTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private int move, index, depth;
+        RootTask(int move, int index, int depth) { this.move = move; this.index = index; this.depth = depth; }
+
+        protected void compute() {
+            Worker w = new Worker(null);
+            w.game.updateState(player, rootBoard);
+            w.game.makeMove(player, move);
+            w.ply = 1;
+            int alpha = rootAlpha(index);
+            int score = -w.negamax(-INFINITY, -alpha, depth - 1, 1 - player, false);
+            w.done();
+            if (score > alpha) rootResult(index, score);  // Otherwise it is only a bound
+        }
+    }
+
+    /***********************************************************
+     * The siblings of a PV node being searched in parallel.
+     *   alpha only grows.  Once a sibling reaches beta the node is cut off
+     *   and every search below it stops.
+     ***********************************************************/
+    private static class SplitPoint {
+        private final SplitPoint parent;  // Stopping an ancestor stops this one too
+        private final int beta;
+        private int alpha;
+        private volatile boolean cutoff = false;
+
+        SplitPoint(SplitPoint parent, int alpha, int beta) {
+            this.parent = parent;
+            this.alpha = alpha;
+            this.beta = beta;
+        }
+
+        synchronized int getAlpha() { return alpha; }
+
+        synchronized void result(int score) {
+            if (score > alpha) alpha = score;
+            if (score >= beta) cutoff = true;
+        }
+
+        boolean stopped() {
+            for (SplitPoint sp = this; sp != null; sp = sp.parent)
+                if (sp.cutoff) return true;
+            return false;
+        }
+    }
+
+    /***********************************************************
+     * Searches one sibling of a split point.
+     ***********************************************************/
+    private class SiblingTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private SplitPoint sp;
+        private char[][] board;
+        private int turn, move, depth;
+
+        SiblingTask(SplitPoint sp, char[][] board, int turn, int move, int depth) {
+            this.sp = sp;
+            this.board = board;
+            this.turn = turn;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        protected void compute() {
+            if (sp.stopped()) return;
+            Worker w = new Worker(sp);
+            w.game.updateState(turn, board);
+            w.game.makeMove(turn, move);
+            w.ply = 1;
+            int alpha = sp.getAlpha();
+            int score = -w.negamax(-sp.beta, -alpha, depth - 1, 1 - turn, false);
+            w.done();
+            if (!w.stopped) sp.result(score);
+        }
+    }
+
+    /***********************************************************
+     * The board and move lists for one task's serial search.
+     ***********************************************************/
+    private class Worker {
+        private OthelloGame game = ai.newPracticeGame();
+        private SplitPoint sp;      // Where this task was split off (null at the root)
+        private boolean stopped;    // A split point above was cut off - the result is meaningless
+        private int[][] moveLists;
+        private int ply;
+        private long visited;       // Nodes (added to the total every 1024 and when done)
+        private long leafCount;     // Leaves and cutoffs (added to the totals when done)
+        private long cutoffCount;
+        private long firstCutoffCount;
+
+        Worker(SplitPoint sp) {
+            this.sp = sp;
+            int cells = rootBoard.length * rootBoard[0].length;
+            moveLists = new int[2 * cells + 2][cells];
+        }
+
+        /** Add the nodes not yet counted to the total **/
+        void done() {
+            nodes.addAndGet(visited & 1023);
+            leaves.addAndGet(leafCount);
+            cutoffs.addAndGet(cutoffCount);
+            firstCutoffs.addAndGet(firstCutoffCount);
+        }
+
+        /**
+         * Fail-hard negamax: the score (for turn) of the position on game.
+         * @param pv True on the leftmost path - these nodes split
+         **/
+        int negamax(int alpha, int beta, int depth, int turn, boolean pv) {
+            if ((++visited & 1023) == 0) {
+                nodes.addAndGet(1024);
+                if (sp != null && sp.stopped()) stopped = true;
+            }
+            if (stopped) return 0;
+
+            if (depth <= 0) {
+                leafCount++;
+                int score = ai.evaluate(game, player);
+                return turn == player ? score : -score;
+            }
+
+            int[] moves = moveLists[ply];
+            int count = game.getMoves(turn, moves);
+            if (count == 0) {
+                // Is this a terminal board
+                if (!game.hasValidMove(1 - turn)) {
+                    game.computeScore();
+                    int diff = game.getHomeScore() - game.getAwayScore();
+                    return turn == 0 ? diff : -diff;
+                }
+
+                // No moves
+                game.makePass(turn);
+                ply++;
+                int score = -negamax(-beta, -alpha, depth - 1, 1 - turn, pv);
+                ply--;
+                game.unmakeMove();
+                return score;
+            }
+
+            // Eldest brother
+            game.makeMove(turn, moves[0]);
+            ply++;
+            int score = -negamax(-beta, -alpha, depth - 1, 1 - turn, pv);
+            ply--;
+            game.unmakeMove();
+            if (score >= beta) { cutoffCount++; firstCutoffCount++; return beta; }
+            if (score > alpha) alpha = score;
+
+            if (pv && depth >= MIN_SPLIT_DEPTH && count > 1 && !stopped)
+                return split(alpha, beta, depth, turn, moves, count);
+
+            for (int i = 1; i < count && !stopped; i++) {
+                game.makeMove(turn, moves[i]);
+                ply++;
+                score = -negamax(-beta, -alpha, depth - 1, 1 - turn, false);
+                ply--;
+                game.unmakeMove();
+                if (score >= beta) { cutoffCount++; return beta; }
+                if (score > alpha) alpha = score;
+            }
+            return alpha;
+        }
+
+        /**
+         * Search moves[1..count-1] in parallel (the young brothers).
+         **/
+        private int split(int alpha, int beta, int depth, int turn, int[] moves, int count) {
+            SplitPoint child = new SplitPoint(sp, alpha, beta);
+            char[][] board = (char[][]) game.getStateAsObject();
+            ArrayList<SiblingTask> tasks = new ArrayList<SiblingTask>();
+            for (int i = 1; i < count; i++)
+                tasks.add(new SiblingTask(child, board, turn, moves[i], depth));
+            RecursiveAction.invokeAll(tasks);
+            if (child.cutoff) { cutoffCount++; return beta; }
+            if (sp != null && sp.stopped()) stopped = true;
+            return child.getAlpha();
+        }
+    }
+}
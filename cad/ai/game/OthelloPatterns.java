@@ -0,0 +1,377 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * OthelloPatterns:
+ *    Pattern-based evaluation - the value of each edge, corner, diagonal
+ *    and 2x5 block configuration looked up in tables read from a file.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***********************************************************
+ * Pattern tables for the Othello evaluation.
+ *   A pattern is an ordered list of cells.  Its configuration on a board is the
+ *   base-3 number with digit k = the content of cell k (0 empty, 1 X, 2 O), and that
+ *   number indexes a table of values (from X's point of view).  The patterns are
+ *     the edges, the 3x3 corner blocks, the 2x5 blocks along each edge from a corner,
+ *     and the long diagonals,
+ *   each fitted to the board size (see Layout).  The symmetric copies of a pattern
+ *   (rotations and reflections) share one table.  Each game phase (how full the
+ *   board is) has its own set of tables.
+ *
+ *   OthelloGame keeps the index of every pattern up to date as moves are made
+ *   (setPatternTracking), so evaluating is just a table lookup per pattern.
+ *
+ *   File format (big-endian, see write):
+ *     int MAGIC, int VERSION, int number of sections,
+ *     per section: int rows, int cols, int phases, long offset of its tables, int entries,
+ *     then each section's tables: for each phase, for each pattern type, 3^length shorts.
+ *   The file is memory-mapped, not read, so loading costs nothing until a table is used.
+ *   Run main to write a file of seed tables (derived from the square weights).
+ ***********************************************************/
+public class OthelloPatterns {
+    public static final int MAGIC = 0x4F504154;  // "OPAT"
+    public static final int VERSION = 1;
+    public static final int PHASES = 4;
+    public static final String DEFAULT_FILE = "othelloPatterns.bin";
+    private static final int SEED_DISC_WEIGHT = 4;  // What each disc is worth (seed tables, end of the game)
+
+    private static final ConcurrentHashMap<Integer, Layout> layouts = new ConcurrentHashMap<Integer, Layout>();
+
+    private Section[] sections;
+
+    /***********************************************************
+     * Where the patterns are on a board of one size.
+     *   Built once per size and shared (it never changes).
+     ***********************************************************/
+    public static final class Layout {
+        public final int rows, cols;
+        public final int[] typeLength;      // Cells in each pattern type
+        public final int[] typeOffset;      // Start of each type's table in a phase
+        public final int phaseEntries;      // Table entries per phase
+        public final int[] instanceType;    // The type of each pattern on the board
+        public final int[][] instanceCells; // ... and its cells (r*cols+c) in digit order
+        public final int[][] cellInstances; // The patterns each cell is in ...
+        public final int[][] cellPowers;    // ... and the value of its digit there (3^k)
+
+        private Layout(int rows, int cols) {
+            this.rows = rows;
+            this.cols = cols;
+            ArrayList<int[][]> templates = templates(rows, cols);
+            if (rows != cols) {
+                // Not square: the transposed patterns are not symmetric copies - they get their own tables
+                for (int[][] t : templates(cols, rows)) {
+                    int[][] transposed = new int[t.length][];
+                    for (int i = 0; i < t.length; i++) transposed[i] = new int[]{t[i][1], t[i][0]};
+                    templates.add(transposed);
+                }
+            }
+
+            ArrayList<Integer> lengths = new ArrayList<Integer>();
+            ArrayList<Integer> types = new ArrayList<Integer>();
+            ArrayList<int[]> cells = new ArrayList<int[]>();
+            HashSet<String> seen = new HashSet<String>();
+            int symmetries = (rows == cols) ? 8 : 4;
+            for (int[][] t : templates) {
+                int type = lengths.size();
+                for (int s = 0; s < symmetries; s++) {
+                    int[] instance = new int[t.length];
+                    boolean[] used = new boolean[rows * cols];
+                    for (int i = 0; i < t.length; i++) {
+                        int r = t[i][0], c = t[i][1];
+                        if ((s & 4) != 0) { int x = r; r = c; c = x; }
+                        if ((s & 1) != 0) r = rows - 1 - r;
+                        if ((s & 2) != 0) c = cols - 1 - c;
+                        instance[i] = r * cols + c;
+                        used[instance[i]] = true;
+                    }
+                    String key = java.util.Arrays.toString(used);
+                    if (seen.add(key)) {  // A reflection of the same cells is the same pattern
+                        types.add(type);
+                        cells.add(instance);
+                    }
+                }
+                if (types.size() > 0 && types.get(types.size() - 1) == type) lengths.add(t.length);
+            }
+
+            typeLength = new int[lengths.size()];
+            typeOffset = new int[lengths.size()];
+            int entries = 0;
+            for (int t = 0; t < typeLength.length; t++) {
+                typeLength[t] = lengths.get(t);
+                typeOffset[t] = entries;
+                entries += pow3(typeLength[t]);
+            }
+            phaseEntries = entries;
+            instanceType = new int[types.size()];
+            instanceCells = new int[types.size()][];
+            int[] perCell = new int[rows * cols];
+            for (int i = 0; i < instanceType.length; i++) {
+                instanceType[i] = types.get(i);
+                instanceCells[i] = cells.get(i);
+                for (int cell : instanceCells[i]) perCell[cell]++;
+            }
+            cellInstances = new int[rows * cols][];
+            cellPowers = new int[rows * cols][];
+            for (int cell = 0; cell < perCell.length; cell++) {
+                cellInstances[cell] = new int[perCell[cell]];
+                cellPowers[cell] = new int[perCell[cell]];
+                perCell[cell] = 0;
+            }
+            for (int i = 0; i < instanceType.length; i++)
+                for (int k = 0, power = 1; k < instanceCells[i].length; k++, power *= 3) {
+                    int cell = instanceCells[i][k];
+                    cellInstances[cell][perCell[cell]] = i;
+                    cellPowers[cell][perCell[cell]++] = power;
+                }
+        }
+
+        /**
+         * The patterns at the top left corner (the others are their reflections):
+         *   top edge, 3x3 corner, 2x5 block along the top edge, main diagonal.
+         **/
+        private static ArrayList<int[][]> templates(int rows, int cols) {
+            ArrayList<int[][]> result = new ArrayList<int[][]>();
+            int[][] edge = new int[cols][];
+            for (int c = 0; c < cols; c++) edge[c] = new int[]{0, c};
+            result.add(edge);
+            int n = Math.min(3, Math.min(rows, cols));
+            int[][] corner = new int[n * n][];
+            for (int i = 0; i < n * n; i++) corner[i] = new int[]{i / n, i % n};
+            result.add(corner);
+            int w = Math.min(5, cols);
+            int[][] block = new int[2 * w][];
+            for (int i = 0; i < 2 * w; i++) block[i] = new int[]{i / w, i % w};
+            result.add(block);
+            int d = Math.min(rows, cols);
+            int[][] diagonal = new int[d][];
+            for (int i = 0; i < d; i++) diagonal[i] = new int[]{i, i};
+            result.add(diagonal);
+            return result;
+        }
+
+        /** Game phase (0 .. PHASES-1) with this many discs on the board **/
+        public int phase(int discs) {
+            return Math.min(PHASES - 1, Math.max(0, (discs - 4) * PHASES / (rows * cols - 3)));
+        }
+
+        /** The index of every pattern on a board, counted from scratch **/
+        public int[] indices(char[][] board) {
+            int[] index = new int[instanceType.length];
+            for (int i = 0; i < index.length; i++)
+                for (int k = instanceCells[i].length - 1; k >= 0; k--) {
+                    char ch = board[instanceCells[i][k] / cols][instanceCells[i][k] % cols];
+                    index[i] = 3 * index[i] + (ch == 'X' ? 1 : ch == 'O' ? 2 : 0);
+                }
+            return index;
+        }
+    }
+
+    /** The pattern layout for a board of this size **/
+    public static Layout layout(int rows, int cols) {
+        return layouts.computeIfAbsent(rows * 1024 + cols, k -> new Layout(rows, cols));
+    }
+
+    private static int pow3(int n) {
+        int p = 1;
+        for (int i = 0; i < n; i++) p *= 3;
+        return p;
+    }
+
+    /***********************************************************
+     * The tables for one board size.
+     ***********************************************************/
+    private static class Section {
+        int rows, cols;
+        Layout layout;
+        ShortBuffer values;   // phases * layout.phaseEntries (absolute gets only - shared by the search threads)
+    }
+
+    private OthelloPatterns(Section[] sections) { this.sections = sections; }
+
+    /**
+     * Map a pattern file.
+     * @throws IOException if it can't be read or isn't a pattern file
+     **/
+    public static OthelloPatterns load(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());  // Stays valid once closed
+            if (buf.getInt() != MAGIC) throw new IOException(fileName + " is not a pattern file");
+            int version = buf.getInt();
+            if (version != VERSION) throw new IOException(fileName + ": unsupported version " + version);
+            Section[] sections = new Section[buf.getInt()];
+            for (int i = 0; i < sections.length; i++) {
+                Section s = new Section();
+                s.rows = buf.getInt();
+                s.cols = buf.getInt();
+                int phases = buf.getInt();
+                long offset = buf.getLong();
+                int entries = buf.getInt();
+                s.layout = layout(s.rows, s.cols);
+                if (phases != PHASES || entries != PHASES * s.layout.phaseEntries || offset + 2L * entries > buf.limit())
+                    throw new IOException(fileName + ": bad tables for " + s.rows + "x" + s.cols);
+                ByteBuffer b = buf.duplicate();
+                b.position((int) offset);
+                b.limit((int) offset + 2 * entries);
+                s.values = b.slice().asShortBuffer();
+                sections[i] = s;
+            }
+            return new OthelloPatterns(sections);
+        }
+    }
+
+    /** True if there are tables for this board size **/
+    public boolean supports(int rows, int cols) { return section(rows, cols) != null; }
+
+    private Section section(int rows, int cols) {
+        for (Section s : sections)
+            if (s.rows == rows && s.cols == cols) return s;
+        return null;
+    }
+
+    /**
+     * The pattern score of g for player.  g must be tracking patterns
+     * (OthelloGame.setPatternTracking) and its size supported.
+     **/
+    public int evaluate(OthelloGame g, int player) {
+        Layout layout = g.getPatternLayout();
+        Section s = section(layout.rows, layout.cols);
+        int[] index = g.getPatternIndex();
+        int base = layout.phase(g.getDiscCount(0) + g.getDiscCount(1)) * layout.phaseEntries;
+        int score = 0;
+        for (int i = 0; i < index.length; i++)
+            score += s.values.get(base + layout.typeOffset[layout.instanceType[i]] + index[i]);
+        return player == 0 ? score : -score;
+    }
+
+    /**
+     * Write a pattern file.
+     * @param tables tables[i] holds the PHASES * phaseEntries values for board size sizes[i] = {rows, cols}
+     **/
+    public static void write(String fileName, int[][] sizes, short[][] tables) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sizes.length);
+            long offset = 12 + 24L * sizes.length;
+            for (int i = 0; i < sizes.length; i++) {
+                out.writeInt(sizes[i][0]);
+                out.writeInt(sizes[i][1]);
+                out.writeInt(PHASES);
+                out.writeLong(offset);
+                out.writeInt(tables[i].length);
+                offset += 2L * tables[i].length;
+            }
+            for (short[] table : tables)
+                for (short v : table) out.writeShort(v);
+        }
+    }
+
+    /**
+     * Seed tables for a board size: each disc is worth its square weight (weightedScores
+     * fitted to the board) early on, shading into a plain disc count by the end.
+     * A cell in several patterns has its value split between them.
+     **/
+    public static short[] seedTables(int[][] weights, int rows, int cols) {
+        Layout layout = layout(rows, cols);
+        int[] weight = OthelloGame.fitSquareWeights(weights, rows, cols);
+        int[] cover = new int[rows * cols];
+        for (int[] cells : layout.instanceCells)
+            for (int cell : cells) cover[cell]++;
+
+        short[] table = new short[PHASES * layout.phaseEntries];
+        for (int phase = 0; phase < PHASES; phase++) {
+            // Pick one pattern of each type to fill its table from
+            for (int t = 0; t < layout.typeLength.length; t++) {
+                int[] cells = null;
+                for (int i = 0; cells == null; i++)
+                    if (layout.instanceType[i] == t) cells = layout.instanceCells[i];
+                int base = phase * layout.phaseEntries + layout.typeOffset[t];
+                for (int index = 0; index < pow3(cells.length); index++) {
+                    double value = 0;
+                    for (int k = 0, x = index; k < cells.length; k++, x /= 3) {
+                        if (x % 3 == 0) continue;
+                        int sign = (x % 3 == 1) ? 1 : -1;
+                        double disc = (weight[cells[k]] * (PHASES - 1 - phase) + SEED_DISC_WEIGHT * phase) / (double) (PHASES - 1);
+                        value += sign * disc / cover[cells[k]];
+                    }
+                    table[base + index] = (short) Math.round(value);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Write a file of seed tables.
+     **/
+    public static void main(String[] args) {
+        String fileName = DEFAULT_FILE;
+        String sizeList = "4,6,8";
+
+        // Parse the arguments
+        for (String arg: args) {
+            try {
+                String[] params = arg.split("=",2);
+                switch (params[0]) {
+                case "--help": printUsage(null); break;
+                case "--out": fileName = params[1]; break;
+                case "--sizes": sizeList = params[1]; break;
+                default:
+                    printUsage("Unrecognized parameter: " + arg);
+                }
+            } catch (Exception e) {
+                printUsage("Error processing parameter: " + arg);
+            }
+        }
+
+        String[] names = sizeList.split(",");
+        int[][] sizes = new int[names.length][];
+        short[][] tables = new short[names.length][];
+        int[][] weights = new OthelloAlphaBetaAI(null).weightedScores;
+        for (int i = 0; i < names.length; i++) {
+            String[] rc = names[i].split("x");
+            int rows = Integer.parseInt(rc[0]);
+            int cols = Integer.parseInt(rc[rc.length - 1]);
+            sizes[i] = new int[]{rows, cols};
+            tables[i] = seedTables(weights, rows, cols);
+        }
+        try {
+            write(fileName, sizes, tables);
+            System.out.println("Wrote seed tables for " + sizeList + " to " + fileName);
+        } catch (IOException e) {
+            System.err.println("ERROR: could not write " + fileName + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Print Usage message and exit
+     **/
+    public static void printUsage(String message) {
+        System.err.println("Usage: java cad.ai.game.OthelloPatterns [params]");
+        System.err.println("       Writes a file of seed pattern tables.  Where params are:");
+        System.err.println("         --help          -- Print this usage message");
+        System.err.println("         --out=FILE      -- File to write (default " + DEFAULT_FILE + ")");
+        System.err.println("         --sizes=LIST    -- Board sizes, e.g. 4,6,8 or 6x8 (default 4,6,8)");
+        if (message != null) System.err.println("       " + message);
+        System.exit(1);
+    }
+}
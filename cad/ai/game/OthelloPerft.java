@@ -0,0 +1,317 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * OthelloPerft:
+ *    Counts the positions reachable in N moves - a correctness and speed
+ *    test of OthelloGame's move generation.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/***********************************************************
+ * Perft: the number of move sequences of exactly N moves from a position.
+ *   A pass (when the player to move has no move but the opponent does) counts
+ *   as a move and a game that ends before depth N counts as one leaf.  With these rules
+ *   the start position of 8x8 Othello gives the well known numbers in KNOWN,
+ *   which are checked whenever perft starts from there.
+ *   Uses makeMove/unmakeMove (the same calls as the searches), counting the moves at
+ *   the last level without making them.  Divide mode gives the count below each
+ *   first move, so two engines that disagree can be narrowed down one move at a time.
+ *   With several threads the tree is split into subtrees a few moves deep, each
+ *   searched on its own copy of the game.
+ ***********************************************************/
+public class OthelloPerft {
+    /** Perft of the 8x8 start position for depth 1, 2, ... **/
+    public static final long[] KNOWN = {
+        4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L, 24571284L,
+        212258800L, 1939886636L
+    };
+    public static final int DEFAULT_DEPTH = 9;
+    private static final int PASS = -1;  // The move recorded for a pass
+    private static final int END = -2;   // Ends a split-off sequence whose game is over
+    private static final int TASKS_PER_THREAD = 8;
+
+    private int turn;
+    private char[][] board;
+    private boolean gridOnly;
+    private int threads;
+
+    /**
+     * @param gridOnly Use the char[][] engine even on 8x8 boards
+     **/
+    public OthelloPerft(int turn, char[][] board, boolean gridOnly, int threads) {
+        this.turn = turn;
+        this.board = board;
+        this.gridOnly = gridOnly;
+        this.threads = Math.max(1, threads);
+    }
+
+    /** A game set up at the position to count from **/
+    private OthelloGame newGame() {
+        OthelloGame game = new OthelloGame(-1, null, null, true, 0, board.length, board[0].length);
+        game.updateState(turn, board);
+        game.setGridOnly(gridOnly);
+        return game;
+    }
+
+    /** Is this the 8x8 start position (the one KNOWN is for)? **/
+    public boolean isStartPosition() {
+        if (board.length != 8 || board[0].length != 8 || turn != 0) return false;
+        char[][] start = (char[][]) new OthelloGame(-1, null, null, true, 0, 8, 8).getStateAsObject();
+        for (int r = 0; r < 8; r++)
+            for (int c = 0; c < 8; c++)
+                if (board[r][c] != start[r][c]) return false;
+        return true;
+    }
+
+    /**
+     * The perft of the game's position.
+     * @param moves Space for each level's moves (moves[d] is used at depth d)
+     **/
+    public static long perft(OthelloGame game, int depth, int[][] moves) {
+        if (depth == 0) return 1;
+        int player = game.getTurn();
+        int n = game.getMoves(player, moves[depth]);
+        if (n == 0) {
+            if (!game.hasValidMove(player ^ 1)) return 1;  // The game ended early - it is a leaf
+            game.makePass(player);
+            long count = perft(game, depth - 1, moves);
+            game.unmakeMove();
+            return count;
+        }
+        if (depth == 1) return n;
+
+        long count = 0;
+        for (int i = 0; i < n; i++) {
+            game.makeMove(player, moves[depth][i]);
+            count += perft(game, depth - 1, moves);
+            game.unmakeMove();
+        }
+        return count;
+    }
+
+    /** Space for perft's moves **/
+    private static int[][] moveBuffers(OthelloGame game, int depth) {
+        return new int[depth + 1][game.getRows() * game.getCols()];
+    }
+
+    /**
+     * The moves (squares r*cols+c, or PASS) from the game's position - none if it is finished.
+     **/
+    private static int[] movesOrPass(OthelloGame game) {
+        int player = game.getTurn();
+        int[] moves = new int[game.getRows() * game.getCols()];
+        int n = game.getMoves(player, moves);
+        if (n > 0) return Arrays.copyOf(moves, n);
+        return game.hasValidMove(player ^ 1) ? new int[] {PASS} : new int[0];
+    }
+
+    private static void play(OthelloGame game, int move) {
+        if (move == END) return;
+        if (move == PASS) game.makePass(game.getTurn());
+        else game.makeMove(game.getTurn(), move);
+    }
+
+    /**
+     * Perft of each first move (in the order movesOrPass gives them).
+     * @param firstMoves Filled with the first moves
+     **/
+    public long[] divide(int depth, List<Integer> firstMoves) throws InterruptedException, ExecutionException {
+        OthelloGame game = newGame();
+        for (int m : movesOrPass(game)) firstMoves.add(m);
+        long[] counts = new long[firstMoves.size()];
+        if (depth == 0) return counts;
+
+        // Split into subtrees: the move sequences of the first few moves
+        List<int[]> prefixes = new ArrayList<int[]>();
+        for (int i = 0; i < firstMoves.size(); i++) prefixes.add(new int[] {i});
+        int prefixDepth = 1;
+        while (threads > 1 && prefixDepth < depth - 1 && prefixes.size() < threads * TASKS_PER_THREAD) {
+            List<int[]> longer = new ArrayList<int[]>();
+            for (int[] prefix : prefixes) {
+                OthelloGame g = newGame();
+                play(g, firstMoves.get(prefix[0]));
+                for (int k = 1; k < prefix.length; k++) play(g, prefix[k]);
+                int[] moves = (prefix[prefix.length - 1] == END) ? new int[0] : movesOrPass(g);
+                if (moves.length == 0) moves = new int[] {END};  // Still one leaf
+                for (int m : moves) {
+                    int[] next = Arrays.copyOf(prefix, prefix.length + 1);
+                    next[prefix.length] = m;
+                    longer.add(next);
+                }
+            }
+            prefixes = longer;
+            prefixDepth++;
+        }
+
+        final int remaining = depth - prefixDepth;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<Future<Long>>();
+            for (final int[] prefix : prefixes) {
+                results.add(pool.submit(() -> {
+                    OthelloGame g = newGame();
+                    play(g, firstMoves.get(prefix[0]));
+                    for (int k = 1; k < prefix.length; k++) play(g, prefix[k]);
+                    if (prefix[prefix.length - 1] == END) return 1L;
+                    return perft(g, remaining, moveBuffers(g, remaining));
+                }));
+            }
+            for (int i = 0; i < prefixes.size(); i++)
+                counts[prefixes.get(i)[0]] += results.get(i).get();
+        } finally {
+            pool.shutdownNow();
+        }
+        return counts;
+    }
+
+    /** The perft of the position **/
+    public long count(int depth) throws InterruptedException, ExecutionException {
+        if (depth == 0) return 1;
+        long[] counts = divide(depth, new ArrayList<Integer>());
+        if (counts.length == 0) return 1;  // The game is already over
+        long total = 0;
+        for (long c : counts) total += c;
+        return total;
+    }
+
+    /** A move as it is sent to the server ("2b"), or "pass" **/
+    private String moveName(int move) {
+        return (move == PASS) ? "pass" : new OthelloGame.Action(move / board[0].length, move % board[0].length).toString();
+    }
+
+    private static String rate(long nodes, long ms) {
+        return String.format("%.1f M/s", nodes / (Math.max(1, ms) * 1000.0));
+    }
+
+    private static void error(String message) { System.err.println("ERROR: " + message); }
+
+    /**
+     * The main entry point.
+     **/
+    public static void main(String[] args) {
+        int depth = DEFAULT_DEPTH;
+        int size = 8;
+        String state = null;
+        boolean divide = false;
+        boolean gridOnly = false;
+        boolean compare = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        // Parse the arguments
+        for (String arg: args) {
+            try {
+                String[] params = arg.split("=",2);
+                switch (params[0]) {
+                case "--help": printUsage(null); break;
+                case "--depth": depth = Integer.parseInt(params[1]); break;
+                case "--size": size = Integer.parseInt(params[1]); break;
+                case "--state": state = params[1]; break;
+                case "--divide": divide = true; break;
+                case "--grid": gridOnly = true; break;
+                case "--compare": compare = true; break;
+                case "--threads": threads = Integer.parseInt(params[1]); break;
+                default:
+                    printUsage("Unrecognized parameter: " + arg);
+                }
+            } catch (Exception e) {
+                printUsage("Error processing parameter: " + arg);
+            }
+        }
+
+        OthelloGame start = new OthelloGame(-1, null, null, true, 0, size, size);
+        if (state != null) {
+            String[] pieces = state.split(",");
+            if (pieces.length < 3) printUsage("Error: the state is turn,rows,cols,cells...");
+            for (int i = 3; i < pieces.length; i++)
+                if (pieces[i].equals(".") || pieces[i].isEmpty()) pieces[i] = " ";  // Easier to type than a space
+            start.updateState(String.join(",", pieces));
+        }
+        char[][] board = (char[][]) start.getStateAsObject();
+        if (compare && (board.length != 8 || board[0].length != 8))
+            printUsage("Error: --compare is for 8x8 boards (smaller ones only have the char[][] engine)");
+
+        try {
+            OthelloPerft perft = new OthelloPerft(start.getTurn(), board, gridOnly, threads);
+            String engine = (gridOnly || board.length != 8 || board[0].length != 8) ? "char[][]" : "bitboard";
+            System.out.println("Perft " + board.length + "x" + board[0].length + ", " + engine + " engine, " +
+                               threads + " thread" + (threads == 1 ? "" : "s") +
+                               (perft.isStartPosition() ? ", from the start position" : ""));
+            boolean wrong = false;
+
+            if (divide || compare) {
+                List<Integer> firstMoves = new ArrayList<Integer>();
+                long begin = System.currentTimeMillis();
+                long[] counts = perft.divide(depth, firstMoves);
+                long ms = System.currentTimeMillis() - begin;
+                long[] others = null;
+                if (compare) others = new OthelloPerft(start.getTurn(), board, !gridOnly, threads).divide(depth, new ArrayList<Integer>());
+
+                long total = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    total += counts[i];
+                    String line = perft.moveName(firstMoves.get(i)) + ": " + counts[i];
+                    if (others != null && others[i] != counts[i]) {
+                        line += "  DIFFERS (other engine " + others[i] + ")";
+                        wrong = true;
+                    }
+                    System.out.println(line);
+                }
+                System.out.println("Moves: " + counts.length + "  Total: " + total + "  (" + ms + " ms, " + rate(total, ms) + ")");
+                if (others != null && !wrong) System.out.println("Both engines agree.");
+                if (perft.isStartPosition() && depth >= 1 && depth <= KNOWN.length && total != KNOWN[depth - 1]) {
+                    System.out.println("WRONG: expected " + KNOWN[depth - 1]);
+                    wrong = true;
+                }
+            } else {
+                for (int d = 1; d <= depth; d++) {
+                    long begin = System.currentTimeMillis();
+                    long nodes = perft.count(d);
+                    long ms = System.currentTimeMillis() - begin;
+                    String check = "";
+                    if (perft.isStartPosition() && d <= KNOWN.length) {
+                        check = (nodes == KNOWN[d - 1]) ? "  ok" : "  WRONG: expected " + KNOWN[d - 1];
+                        if (nodes != KNOWN[d - 1]) wrong = true;
+                    }
+                    System.out.println(String.format("depth %2d %14d %8d ms %12s", d, nodes, ms, rate(nodes, ms)) + check);
+                }
+            }
+            if (wrong) System.exit(1);
+        } catch (Exception e) {
+            error("Perft failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Print Usage message and exit
+     **/
+    public static void printUsage(String message) {
+        System.err.println("Usage: java cad.ai.game.OthelloPerft [params]");
+        System.err.println("       Where params are:");
+        System.err.println("         --help                -- Print this usage message");
+        System.err.println("         --depth=X             -- Count to this depth (default " + DEFAULT_DEPTH + ").");
+        System.err.println("         --size=X              -- Start position of an X by X board (default 8).");
+        System.err.println("         --state=STATE         -- Count from this state instead (as the server sends it: turn,rows,cols,cells");
+        System.err.println("                                  with a cell X, O, or . for empty).");
+        System.err.println("         --divide              -- Print the count below each first move.");
+        System.err.println("         --threads=X           -- Threads to count with (default is the number of processors).");
+        System.err.println("         --grid                -- Use the char[][] engine even on 8x8 boards.");
+        System.err.println("         --compare             -- Divide with both 8x8 engines and show where they differ.");
+        System.err.println("       Exits with 1 if a count is wrong (start position) or the engines differ.");
+        if (message != null)
+            System.err.println("       " + message);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,328 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * OthelloSearch:
+ *    One alpha-beta searcher for OthelloAlphaBetaAI.  Each search thread
+ *    has its own, working on its own copy of the board.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+/***********************************************************
+ * An iterative deepening Principal Variation Search over a private practice game.
+ *   Moves are made and unmade in place on the practice game, so a search
+ *   allocates nothing.  Several searchers may share one TranspositionTable
+ *   (Lazy SMP) - that is the only thing they share.
+ *   The search is negamax: scores are for the player to move, so at the root
+ *   they are from the point of view of "player" (the AI's side).
+ ***********************************************************/
+public class OthelloSearch {
+    private static final int INFINITY = 1000000;
+    private static final int ASPIRATION_WINDOW = 8;  // Half width of the first window around the last score
+
+    private OthelloAlphaBetaAI ai;    // Supplies the evaluation function
+    private TranspositionTable tt;    // Possibly shared with other searchers
+    private OthelloGame practiceGame; // The board being searched
+    private TimeManager timeManager;  // Only the main searcher watches the clock (null otherwise)
+    private int player;               // Whose point of view the scores are from
+    private int[][] moveLists;        // Moves available at each ply of the search (reused)
+    private OthelloMoveOrdering ordering; // Killers and history are per thread
+    private int ply;                  // Current ply of the search (index into moveLists)
+    private long nodes;               // Nodes visited (also paces the clock checks)
+    private long leaves;              // Positions evaluated at the depth limit
+    private long ttProbes, ttHits;    // Transposition table lookups and how many found the position
+    private boolean canAbort;         // True once there is a completed iteration to fall back on
+    private boolean aborted;          // Out of time (or stopped) - unwind the current iteration
+    private volatile boolean stop;    // Set by another thread to end the search
+    private int completedDepth;       // Deepest iteration finished
+    private int bestMove;             // Best root move (square) of that iteration
+    private int bestScore;
+    private int[][] pv;               // Triangular PV table: pv[ply] is the best line from ply on
+    private int[] pvLength;
+    private int[] bestPv;             // The PV of the deepest completed iteration
+    private int bestPvLength;
+
+    public OthelloSearch(OthelloAlphaBetaAI ai, TranspositionTable tt, OthelloGame practiceGame) {
+        this.ai = ai;
+        this.tt = tt;
+        this.practiceGame = practiceGame;
+    }
+
+    /**
+     * Copy the position to search.  The rest of the search works in place.
+     **/
+    public void setPosition(int player, char[][] board) {
+        this.player = player;
+        practiceGame.updateState(player, board);
+        int cells = board.length * board[0].length;
+        if (moveLists == null || moveLists[0].length != cells) {
+            moveLists = new int[2 * cells + 2][cells];
+            pv = new int[2 * cells + 3][2 * cells + 3];
+            pvLength = new int[2 * cells + 3];
+            bestPv = new int[2 * cells + 3];
+        }
+        if (ordering == null || !ordering.fits(cells))
+            ordering = new OthelloMoveOrdering(ai.weightedScores, board.length, board[0].length);
+        ordering.newSearch();
+        nodes = 0;
+        leaves = 0;
+        ttProbes = 0;
+        ttHits = 0;
+        completedDepth = 0;
+        bestMove = -1;
+        bestPvLength = 0;
+        stop = false;
+    }
+
+    /** The clock to watch (null = search until stopped or maxDepth is done) **/
+    public void setTimeManager(TimeManager timeManager) { this.timeManager = timeManager; }
+
+    /** Ask the search to finish (from another thread) **/
+    public void stop() { stop = true; }
+
+    /** Results **/
+    public int getCompletedDepth() { return completedDepth; }
+    public int getBestMove() { return bestMove; }
+    public int getBestScore() { return bestScore; }
+    public long getNodes() { return nodes; }
+    public long getLeaves() { return leaves; }
+    public long getTtProbes() { return ttProbes; }
+    public long getTtHits() { return ttHits; }
+    public OthelloGame getPracticeGame() { return practiceGame; }
+    public long getCutoffs() { return ordering.getCutoffs(); }
+    public long getFirstCutoffs() { return ordering.getFirstCutoffs(); }
+
+    /**
+     * The principal variation of the last completed iteration, e.g. "2d 2c 3c" ("pass" for a pass).
+     **/
+    public String getPrincipalVariation() {
+        StringBuilder sb = new StringBuilder();
+        int cols = practiceGame.getCols();
+        for (int i = 0; i < bestPvLength; i++) {
+            if (i > 0) sb.append(' ');
+            int sq = bestPv[i];
+            if (sq < 0) sb.append("pass");
+            else sb.append(sq / cols).append((char) ('a' + sq % cols));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Move i of the principal variation (-1 for a pass, -2 if the line is shorter than that)
+     **/
+    public int getPrincipalMove(int i) { return i < bestPvLength ? bestPv[i] : -2; }
+
+    /**
+     * Iterative deepening: search firstDepth, firstDepth+1, ... ply deep until
+     * maxDepth is done, the time budget runs out or stop() is called.
+     * Each iteration searches the previous best move first, in a window around the
+     * previous iteration's score (widened and searched again if the score falls outside).
+     * An aborted iteration is thrown away.
+     * @param rootMoves The moves to consider (squares) - reordered as the search goes
+     * @return the best move of the deepest completed iteration (rootMoves[0] if none completed)
+     **/
+    public int iterate(int[] rootMoves, int count, int firstDepth, int maxDepth) {
+        bestMove = rootMoves[0];
+        bestPvLength = 0;
+        canAbort = (timeManager == null);  // Helpers can always stop - the main search has the answer
+        aborted = false;
+        for (int depth = firstDepth; depth <= maxDepth && !stop; depth++) {
+            int score;
+            if (completedDepth == 0)
+                score = searchRoot(rootMoves, count, -INFINITY, INFINITY, depth);
+            else {
+                // Aspiration window
+                int delta = ASPIRATION_WINDOW;
+                int alpha = bestScore - delta;
+                int beta = bestScore + delta;
+                while (true) {
+                    score = searchRoot(rootMoves, count, alpha, beta, depth);
+                    if (aborted) break;
+                    if (score <= alpha) alpha = Math.max(-INFINITY, alpha - delta);     // Failed low
+                    else if (score >= beta) beta = Math.min(INFINITY, beta + delta);    // Failed high
+                    else break;
+                    delta *= 2;
+                }
+            }
+            if (aborted) break;
+
+            bestMove = rootMoves[0];
+            bestScore = score;
+            completedDepth = depth;
+            bestPvLength = pvLength[0];
+            System.arraycopy(pv[0], 0, bestPv, 0, bestPvLength);
+            canAbort = true;
+            if (timeManager != null && timeManager.softExpired()) break;
+        }
+        return bestMove;
+    }
+
+    /**
+     * Search every root move to the given depth (PVS: the first move with the
+     * full window, the rest with a null window and again only if they might be better).
+     * @return the best score (fail-soft) - the best move is moved to the front of rootMoves
+     **/
+    private int searchRoot(int[] rootMoves, int count, int alpha, int beta, int depth) {
+        int iterationBest = 0;
+        int best = -INFINITY;
+        ply = 0;
+        pvLength[0] = 0;
+        for (int i = 0; i < count; i++) {
+            practiceGame.makeMove(player, rootMoves[i]);
+            ply++;
+            int a = Math.max(alpha, best);
+            int score;
+            if (i == 0)
+                score = -negamax(-beta, -a, depth - 1, 1 - player);
+            else {
+                score = -negamax(-a - 1, -a, depth - 1, 1 - player);
+                if (score > a && score < beta && !aborted)
+                    score = -negamax(-beta, -a, depth - 1, 1 - player);
+            }
+            ply--;
+            practiceGame.unmakeMove();
+            if (aborted) return 0;
+            if (score > best) {
+                iterationBest = i;
+                best = score;
+                updatePv(rootMoves[i]);
+                if (best >= beta) break;
+            }
+        }
+        int move = rootMoves[iterationBest];
+        System.arraycopy(rootMoves, 0, rootMoves, 1, iterationBest);
+        rootMoves[0] = move;
+        return best;
+    }
+
+    /**
+     * Disc differential (for turn) on the finished practice board
+     **/
+    private int finalScore(int turn) {
+        practiceGame.computeScore();
+        return turn == 0 ? practiceGame.getHomeScore() - practiceGame.getAwayScore() :
+            practiceGame.getAwayScore() - practiceGame.getHomeScore();
+    }
+
+    /**
+     * Principal Variation Search (negamax, fail-soft).
+     *   Scores are for turn, the player to move on practiceGame.
+     *   Only the first move is searched with the full window.  The others are
+     *   expected to be worse, so a null window just proves it - and if one turns
+     *   out better it is searched again with the full window.
+     **/
+    private int negamax(int alpha, int beta, int depth, int turn) {
+        pvLength[ply] = 0;
+        if (outOfTime()) return 0;
+
+        if (depth <= 0) {
+            leaves++;
+            int score = ai.evaluate(practiceGame, player);
+            return turn == player ? score : -score;
+        }
+
+        // Has this position already been searched deep enough?
+        long key = practiceGame.getHash();
+        long entry = tt.probe(key);
+        ttProbes++;
+        int ttMove = TranspositionTable.NO_MOVE;
+        if (entry != 0L) {
+            ttHits++;
+            ttMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int ttScore = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT ||
+                    (bound == TranspositionTable.LOWER && ttScore >= beta) ||
+                    (bound == TranspositionTable.UPPER && ttScore <= alpha))
+                    return ttScore;
+            }
+        }
+
+        int[] moves = moveLists[ply];
+        int count = practiceGame.getMoves(turn, moves);
+        if (count == 0) {
+            // Is this a terminal board
+            if (!practiceGame.hasValidMove(1 - turn))
+                return finalScore(turn);
+
+            // No moves
+            practiceGame.makePass(turn);
+            ply++;
+            int score = -negamax(-beta, -alpha, depth - 1, 1 - turn);
+            ply--;
+            practiceGame.unmakeMove();
+            updatePv(-1);
+            return score;
+        }
+        ordering.order(practiceGame, turn, moves, count, ply, depth, ttMove);
+
+        int bestScore = -INFINITY;
+        int bestMove = moves[0];
+        for (int i = 0; i < count; i++) {
+            int a = Math.max(alpha, bestScore);
+            practiceGame.makeMove(turn, moves[i]);
+            ply++;
+            int score;
+            if (i == 0)
+                score = -negamax(-beta, -a, depth - 1, 1 - turn);
+            else {
+                score = -negamax(-a - 1, -a, depth - 1, 1 - turn);
+                if (score > a && score < beta && !aborted)
+                    score = -negamax(-beta, -a, depth - 1, 1 - turn);
+            }
+            ply--;
+            practiceGame.unmakeMove();
+            if (aborted) return 0;
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = moves[i];
+                updatePv(bestMove);
+                if (bestScore >= beta) {
+                    ordering.cutoff(turn, moves[i], ply, depth, i);
+                    break;
+                }
+            }
+        }
+        storeResult(key, depth, alpha, beta, bestScore, bestMove);
+        return bestScore;
+    }
+
+    /**
+     * The move just searched from this ply is the best so far: the PV here is it plus the PV below it.
+     **/
+    private void updatePv(int move) {
+        int[] line = pv[ply];
+        line[0] = move;
+        int n = pvLength[ply + 1];
+        System.arraycopy(pv[ply + 1], 0, line, 1, n);
+        pvLength[ply] = n + 1;
+    }
+
+    /**
+     * Count the node and check the clock and the stop flag (every 1024 nodes).
+     * @return true if the current iteration has to be abandoned
+     **/
+    private boolean outOfTime() {
+        if ((++nodes & 1023) == 0 && canAbort &&
+            (stop || (timeManager != null && timeManager.hardExpired())))
+            aborted = true;
+        return aborted;
+    }
+
+    /**
+     * Save a search result.  Scores are for the player to move (which is part of the key),
+     * so the bound depends only on where the score fell relative to the window it was searched with.
+     **/
+    private void storeResult(long key, int depth, int alpha, int beta, int score, int move) {
+        int bound = (score <= alpha) ? TranspositionTable.UPPER :
+            (score >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        tt.store(key, depth, bound, score, move);
+    }
+}
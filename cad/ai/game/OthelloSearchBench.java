@@ -0,0 +1,133 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * OthelloSearchBench:
+ *    Measures how the parallel search scales - the time to reach a fixed
+ *    depth on a fixed set of positions for 1, 2, ... threads.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/***********************************************************
+ * Time-to-depth benchmark for OthelloAlphaBetaAI.
+ *   The positions come from random games with a fixed seed so every run
+ *   (and every thread count) searches exactly the same positions.
+ *   Each search starts from an empty transposition table.
+ ***********************************************************/
+public class OthelloSearchBench {
+    public static final int DEFAULT_DEPTH = 8;
+    public static final int DEFAULT_POSITIONS = 8;
+    public static final long DEFAULT_SEED = 350;
+
+    /**
+     * Play random moves from the opening to get a middle game position.
+     * @return the game (getTurn() is the player to move) or null if the game ended
+     **/
+    private static OthelloGame randomPosition(Random ran, int plies) {
+        OthelloGame g = new OthelloGame(-1, null, null, true, 0);
+        for (int i = 0; i < plies && !g.isDone(); i++) {
+            ArrayList<OthelloGame.Action> actions = g.getActions(g.getTurn());
+            g.processMove(g.getTurn(), actions.get(ran.nextInt(actions.size())).toString());
+        }
+        return g.isDone() ? null : g;
+    }
+
+    public static void main(String[] args) {
+        int depth = DEFAULT_DEPTH;
+        int numPositions = DEFAULT_POSITIONS;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        long seed = DEFAULT_SEED;
+        boolean ybwc = false;  // Time the deterministic search instead of Lazy SMP
+        boolean showPv = false;
+        String patterns = null;  // Pattern table file to evaluate with
+
+        // Parse the arguments
+        for (String arg: args) {
+            try {
+                String[] params = arg.split("=",2);
+                switch (params[0]) {
+                case "--help": printUsage(null); break;
+                case "--depth": depth = Integer.parseInt(params[1]); break;
+                case "--positions": numPositions = Integer.parseInt(params[1]); break;
+                case "--threads": maxThreads = Integer.parseInt(params[1]); break;
+                case "--seed": seed = Long.parseLong(params[1]); break;
+                case "--ybwc": ybwc = true; break;
+                case "--pv": showPv = true; break;
+                case "--patterns": patterns = params[1]; break;
+                default:
+                    printUsage("Unrecognized parameter: " + arg);
+                }
+            } catch (Exception e) {
+                printUsage("Error processing parameter: " + arg);
+            }
+        }
+
+        // The fixed position set
+        Random ran = new Random(seed);
+        ArrayList<OthelloGame> positions = new ArrayList<OthelloGame>();
+        while (positions.size() < numPositions) {
+            OthelloGame g = randomPosition(ran, 10 + ran.nextInt(20));
+            if (g != null) positions.add(g);
+        }
+
+        OthelloAlphaBetaAI ai = new OthelloAlphaBetaAI(null);
+        if (patterns != null && !ai.loadPatterns(patterns)) System.exit(1);
+        long baseTime = 0;
+        int[] firstMoves = new int[numPositions];  // The moves found with one thread
+        System.out.println((ybwc ? "YBWC" : "Lazy SMP") + ", depth " + depth + ", " + numPositions + " positions");
+        System.out.println("threads      ms      nodes  speedup  first cut  same moves");
+        for (int t = 1; t <= maxThreads; t++) {
+            ai.setThreads(t);
+            search(ai, positions.get(0), depth, ybwc);  // Warm up
+            long nodes = 0;
+            double firstCut = 0;
+            int same = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < numPositions; i++) {
+                int move = search(ai, positions.get(i), depth, ybwc);
+                nodes += ai.getLastNodes();
+                firstCut += ai.getFirstCutoffRate() / numPositions;
+                if (t == 1) firstMoves[i] = move;
+                if (move == firstMoves[i]) same++;
+                if (showPv && !ybwc) System.out.println("    " + i + ": " + ai.getPrincipalVariation());
+            }
+            long ms = (System.nanoTime() - start) / 1000000;
+            if (t == 1) baseTime = Math.max(1, ms);
+            System.out.println(String.format("%7d %7d %10d  %7.2f  %8.1f%%  %d/%d", t, ms, nodes,
+                                             (double) baseTime / Math.max(1, ms), 100 * firstCut, same, numPositions));
+        }
+        ai.end();
+    }
+
+    private static int search(OthelloAlphaBetaAI ai, OthelloGame g, int depth, boolean ybwc) {
+        char[][] board = (char[][]) g.getStateAsObject();
+        return ybwc ? ai.searchFixedDepth(g.getTurn(), board, depth) : ai.searchToDepth(g.getTurn(), board, depth);
+    }
+
+    /**
+     * Print Usage message and exit
+     **/
+    public static void printUsage(String message) {
+        System.err.println("Usage: java cad.ai.game.OthelloSearchBench [params]");
+        System.err.println("       Where params are:");
+        System.err.println("         --help          -- Print this usage message");
+        System.err.println("         --depth=X       -- Depth to search each position to (default " + DEFAULT_DEPTH + ")");
+        System.err.println("         --positions=X   -- Number of positions (default " + DEFAULT_POSITIONS + ")");
+        System.err.println("         --threads=X     -- Most threads to try (default is the number of processors)");
+        System.err.println("         --ybwc          -- Time the deterministic (Young Brothers Wait) search");
+        System.err.println("         --pv            -- Print the principal variation found for each position");
+        System.err.println("         --patterns=FILE -- Evaluate with these pattern tables");
+        System.err.println("         --seed=X        -- Seed for the random positions (default " + DEFAULT_SEED + ")");
+        if (message != null) System.err.println("       " + message);
+        System.exit(1);
+    }
+}
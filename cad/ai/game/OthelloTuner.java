@@ -0,0 +1,276 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * OthelloTuner:
+ *    Fits the evaluation weights of OthelloAlphaBetaAI to a corpus of
+ *    positions with known results (Texel's tuning method).
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/***********************************************************
+ * Texel tuning for OthelloAlphaBetaAI.evaluate.
+ *   The evaluation e of a position is turned into an expected result
+ *   sigmoid(K*e) (1 = X wins, 0.5 draw, 0 O wins) and the weights are fitted
+ *   by gradient descent (Adam) to minimise the mean squared difference from
+ *   the actual results.  K is fitted first, with the starting weights.
+ *
+ *   The evaluation is linear in what is tuned:
+ *     the multipliers of the parity, corner, mobility and frontier terms, and
+ *     the square weights - one value for each of the 10 squares that are
+ *     different under rotation and reflection (W_SQUARES is left as it is).
+ *   So each position is reduced once to its feature vector (floats in one big
+ *   array) and every iteration is a pass over that array, split between threads.
+ ***********************************************************/
+public class OthelloTuner {
+    public static final int DEFAULT_ITERATIONS = 300;
+    public static final double DEFAULT_RATE = 0.5;
+    private static final int SQUARE_CLASSES = 10;
+    private static final int FEATURES = 4 + SQUARE_CLASSES;  // parity, corners, mobility, frontier, squares
+    private static final int[][] SQUARE_CLASS = {  // 8x8 squares numbered by symmetry class
+        {0, 1, 2, 3, 3, 2, 1, 0},
+        {1, 4, 5, 6, 6, 5, 4, 1},
+        {2, 5, 7, 8, 8, 7, 5, 2},
+        {3, 6, 8, 9, 9, 8, 6, 3},
+        {3, 6, 8, 9, 9, 8, 6, 3},
+        {2, 5, 7, 8, 8, 7, 5, 2},
+        {1, 4, 5, 6, 6, 5, 4, 1},
+        {0, 1, 2, 3, 3, 2, 1, 0}
+    };
+
+    private int size;           // Positions
+    private float[] features;   // size * FEATURES, from X's point of view
+    private float[] results;    // 1, 0.5 or 0 for X
+    private ExecutorService pool;
+    private int chunks;         // Pieces each pass is split into
+
+    public OthelloTuner(int threads) {
+        pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        chunks = 4 * Math.max(1, threads);
+    }
+
+    public void shutdown() { pool.shutdownNow(); }
+
+    /**
+     * Work out the feature vector of every position in the corpus.
+     **/
+    public void setCorpus(OthelloCorpus corpus) throws Exception {
+        size = corpus.size();
+        features = new float[size * FEATURES];
+        results = new float[size];
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int k = 0; k < chunks; k++) {
+            final int from = (int) ((long) size * k / chunks);
+            final int to = (int) ((long) size * (k + 1) / chunks);
+            tasks.add(() -> {
+                OthelloGame g = new OthelloGame(-1, null, null, false, 0);
+                for (int i = from; i < to; i++) extract(corpus, i, g);
+                return null;
+            });
+        }
+        for (Future<Void> f : pool.invokeAll(tasks)) f.get();
+    }
+
+    /**
+     * The features of position i (g is scratch space).
+     **/
+    private void extract(OthelloCorpus corpus, int i, OthelloGame g) {
+        char[][] board = corpus.getBoard(i);
+        g.updateState(corpus.getTurn(i), board);
+        int base = i * FEATURES;
+        features[base + OthelloAlphaBetaAI.W_PARITY] = ratio(g.getDiscCount(0), g.getDiscCount(1));
+        features[base + OthelloAlphaBetaAI.W_CORNERS] = ratio(g.getCornerCount(0), g.getCornerCount(1));
+        features[base + OthelloAlphaBetaAI.W_MOBILITY] = ratio(Long.bitCount(g.getValidMoves(0)), Long.bitCount(g.getValidMoves(1)));
+        features[base + OthelloAlphaBetaAI.W_FRONTIER] = ratio(g.getFrontierCount(1), g.getFrontierCount(0));
+        int[] squareClass = OthelloGame.fitSquareWeights(SQUARE_CLASS, board.length, board[0].length);
+        int cols = board[0].length;
+        for (int r = 0; r < board.length; r++)
+            for (int c = 0; c < cols; c++)
+                if (board[r][c] != ' ')
+                    features[base + 4 + squareClass[r * cols + c]] += (board[r][c] == 'X') ? 1 : -1;
+        int result = corpus.getResult(i);
+        results[i] = (result > 0) ? 1f : (result < 0) ? 0f : 0.5f;
+    }
+
+    private static float ratio(int mine, int theirs) {
+        return (mine + theirs == 0) ? 0f : (float) (mine - theirs) / (mine + theirs);
+    }
+
+    /**
+     * The tuned values for the AI's current weights:
+     *   the 4 term multipliers, then W_SQUARES * (class square weight) / 100 for each class.
+     **/
+    public static double[] parameters(OthelloAlphaBetaAI ai) {
+        double[] theta = new double[FEATURES];
+        for (int k = 0; k < 4; k++) theta[k] = ai.evalWeights[k];
+        for (int r = 0; r < 8; r++)
+            for (int c = 0; c < 8; c++)
+                theta[4 + SQUARE_CLASS[r][c]] = ai.evalWeights[OthelloAlphaBetaAI.W_SQUARES] * ai.weightedScores[r][c] / 100.0;
+        return theta;
+    }
+
+    /**
+     * Put tuned values back into the AI's weights (rounded to whole numbers).
+     **/
+    public static void apply(double[] theta, OthelloAlphaBetaAI ai) {
+        for (int k = 0; k < 4; k++) ai.evalWeights[k] = (int) Math.round(theta[k]);
+        int squares = Math.max(1, ai.evalWeights[OthelloAlphaBetaAI.W_SQUARES]);
+        for (int r = 0; r < 8; r++)
+            for (int c = 0; c < 8; c++)
+                ai.weightedScores[r][c] = (int) Math.round(theta[4 + SQUARE_CLASS[r][c]] * 100 / squares);
+    }
+
+    /**
+     * Mean squared error over the corpus, and its gradient (if gradient isn't null).
+     **/
+    public double error(double[] theta, double k, double[] gradient) throws Exception {
+        List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+        for (int t = 0; t < chunks; t++) {
+            final int from = (int) ((long) size * t / chunks);
+            final int to = (int) ((long) size * (t + 1) / chunks);
+            tasks.add(() -> {
+                double[] sum = new double[FEATURES + 1];  // error, then the gradient
+                for (int i = from; i < to; i++) {
+                    int base = i * FEATURES;
+                    double e = 0;
+                    for (int f = 0; f < FEATURES; f++) e += theta[f] * features[base + f];
+                    double s = 1 / (1 + Math.exp(-k * e));
+                    double diff = results[i] - s;
+                    sum[0] += diff * diff;
+                    if (gradient == null) continue;
+                    double d = -2 * diff * s * (1 - s) * k;
+                    for (int f = 0; f < FEATURES; f++) sum[f + 1] += d * features[base + f];
+                }
+                return sum;
+            });
+        }
+        double error = 0;
+        if (gradient != null) java.util.Arrays.fill(gradient, 0);
+        for (Future<double[]> f : pool.invokeAll(tasks)) {
+            double[] sum = f.get();
+            error += sum[0];
+            if (gradient != null)
+                for (int j = 0; j < FEATURES; j++) gradient[j] += sum[j + 1];
+        }
+        if (gradient != null)
+            for (int j = 0; j < FEATURES; j++) gradient[j] /= size;
+        return error / size;
+    }
+
+    /**
+     * The K that fits the results best with these weights (a golden section search).
+     **/
+    public double fitK(double[] theta) throws Exception {
+        double lo = 0.0001, hi = 1;
+        double g = (Math.sqrt(5) - 1) / 2;
+        for (int i = 0; i < 40; i++) {
+            double a = hi - g * (hi - lo), b = lo + g * (hi - lo);
+            if (error(theta, a, null) < error(theta, b, null)) hi = b; else lo = a;
+        }
+        return (lo + hi) / 2;
+    }
+
+    /**
+     * Adam gradient descent from theta (updated in place).
+     **/
+    public void tune(double[] theta, double k, int iterations, double rate, boolean verbose) throws Exception {
+        double[] gradient = new double[FEATURES];
+        double[] m = new double[FEATURES], v = new double[FEATURES];
+        double beta1 = 0.9, beta2 = 0.999;
+        for (int it = 1; it <= iterations; it++) {
+            double err = error(theta, k, gradient);
+            if (verbose && (it == 1 || it % 50 == 0))
+                System.out.println(String.format("iteration %4d  error %.6f", it, err));
+            for (int j = 0; j < FEATURES; j++) {
+                m[j] = beta1 * m[j] + (1 - beta1) * gradient[j];
+                v[j] = beta2 * v[j] + (1 - beta2) * gradient[j] * gradient[j];
+                double mHat = m[j] / (1 - Math.pow(beta1, it));
+                double vHat = v[j] / (1 - Math.pow(beta2, it));
+                theta[j] -= rate * mHat / (Math.sqrt(vHat) + 1e-12);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        String corpusFile = null;
+        String outFile = OthelloAlphaBetaAI.DEFAULT_WEIGHTS_FILE;
+        int iterations = DEFAULT_ITERATIONS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double rate = DEFAULT_RATE;
+        double k = 0;  // 0 = fit it
+
+        // Parse the arguments
+        for (String arg: args) {
+            try {
+                String[] params = arg.split("=",2);
+                switch (params[0]) {
+                case "--help": printUsage(null); break;
+                case "--corpus": corpusFile = params[1]; break;
+                case "--out": outFile = params[1]; break;
+                case "--iterations": iterations = Integer.parseInt(params[1]); break;
+                case "--threads": threads = Integer.parseInt(params[1]); break;
+                case "--rate": rate = Double.parseDouble(params[1]); break;
+                case "--k": k = Double.parseDouble(params[1]); break;
+                default:
+                    printUsage("Unrecognized parameter: " + arg);
+                }
+            } catch (Exception e) {
+                printUsage("Error processing parameter: " + arg);
+            }
+        }
+        if (corpusFile == null) printUsage("Error: the corpus must be specified!");
+
+        OthelloTuner tuner = new OthelloTuner(threads);
+        try {
+            long start = System.currentTimeMillis();
+            OthelloCorpus corpus = OthelloCorpus.load(corpusFile);
+            tuner.setCorpus(corpus);
+            System.out.println("Loaded " + corpus.size() + " positions in " + (System.currentTimeMillis() - start) + " ms");
+
+            OthelloAlphaBetaAI ai = new OthelloAlphaBetaAI(null);  // Starts from the current weights (file or built in)
+            double[] theta = parameters(ai);
+            if (k <= 0) k = tuner.fitK(theta);
+            System.out.println(String.format("K = %.5f, starting error %.6f", k, tuner.error(theta, k, null)));
+            tuner.tune(theta, k, iterations, rate, true);
+            System.out.println(String.format("Final error %.6f", tuner.error(theta, k, null)));
+
+            apply(theta, ai);
+            ai.saveWeights(outFile);
+            System.out.println("Wrote " + outFile);
+            ai.end();
+        } catch (Exception e) {
+            System.err.println("ERROR: " + e);
+            System.exit(1);
+        } finally {
+            tuner.shutdown();
+        }
+    }
+
+    /**
+     * Print Usage message and exit
+     **/
+    public static void printUsage(String message) {
+        System.err.println("Usage: java cad.ai.game.OthelloTuner [params]");
+        System.err.println("       Where params are:");
+        System.err.println("         --help          -- Print this usage message");
+        System.err.println("         --corpus=FILE   -- Positions to tune on (see OthelloCorpus) (MANDATORY)");
+        System.err.println("         --out=FILE      -- Weights file to write (default " + OthelloAlphaBetaAI.DEFAULT_WEIGHTS_FILE + ")");
+        System.err.println("         --iterations=X  -- Gradient descent steps (default " + DEFAULT_ITERATIONS + ")");
+        System.err.println("         --rate=X        -- Learning rate (default " + DEFAULT_RATE + ")");
+        System.err.println("         --k=X           -- Sigmoid scale (default: fitted to the corpus)");
+        System.err.println("         --threads=X     -- Threads to use (default is the number of processors)");
+        if (message != null) System.err.println("       " + message);
+        System.exit(1);
+    }
+}
@@ -35,7 +35,8 @@ public class PlayGame {
     private GameType gameType;
     private int numGames;
     private int verbose;
-    private String path = "C:/Ai_Repo/SimpleAI/cad/ai/game/";
+    private String path;  // Where the AIs' record files are
+    private boolean stats = false;  // Print the AIs' search statistics (see InstrumentedAI)
 
     /**
      * Constructor
@@ -47,6 +48,15 @@ public class PlayGame {
      **/
     public PlayGame(int homeAI, int awayAI, GameType gameType,
                     int numGames, int verbose) {
+        this(homeAI, awayAI, gameType, numGames, verbose, AbstractAI.DATA_DIR);
+    }
+
+    /**
+     * @param path - the directory with the AIs' record files
+     **/
+    public PlayGame(int homeAI, int awayAI, GameType gameType,
+                    int numGames, int verbose, String path) {
+        this.path = path.endsWith("/") ? path : path + "/";
 
         userIn = new BufferedReader(new InputStreamReader(System.in));  // To access user input stream
         game = new Game[2];  // A copy of the game for each player.
@@ -82,6 +92,8 @@ public class PlayGame {
         case OTHELLO:
             ai[0] = (homeAI == 0 ? null : new OthelloAlphaBetaAI(this.path + "firstMovesOthello.txt"));
             ai[1] = (awayAI == 0 ? null : new OthelloAlphaBetaAI(this.path + "firstMovesOthelloaway.txt"));
+            for (AI a : ai)
+                if (a != null) ((OthelloAlphaBetaAI) a).setVerbose(verbose);
             break;
         }
     }
@@ -133,6 +145,9 @@ public class PlayGame {
         }
     }
 
+    /** Print the search statistics of the AIs that keep them, per move and per game **/
+    public void setStats(boolean stats) { this.stats = stats; }
+
     /**
      * Play the current game
      **/
@@ -144,6 +159,11 @@ public class PlayGame {
                 // Get the move based on current game state
                 game[turn].updateState(state);
                 String move = game[turn].getMove();
+                if (stats && ai[turn] instanceof InstrumentedAI) {
+                    SearchStats s = ((InstrumentedAI) ai[turn]).getMoveStats();
+                    System.out.println((turn == 0 ? "Home" : "Away") + " move " + move + ": " +
+                                       (s == null ? "no search" : s.toString()));
+                }
                 processInput(move, turn);
             }
         }
@@ -166,6 +186,9 @@ public class PlayGame {
         char r = winner == 0 ? 'H' : winner == 1 ? 'A' : 'T';
         game[0].postWinner(r);
         game[1].postWinner(r);
+        for (int p = 0; p < 2; p++)
+            if (stats && ai[p] instanceof InstrumentedAI)
+                System.out.println((p == 0 ? "Home" : "Away") + " game: " + ((InstrumentedAI) ai[p]).getGameStats().summary());
     }
 
     /**
@@ -276,6 +299,8 @@ public class PlayGame {
         GameType gameType = DEFAULT_GAME;
         int repeat = 1;  // Number of games to play
         int verbose = 1; // How "noisy" to be
+        String path = AbstractAI.DATA_DIR;  // Where the AIs' record files are
+        boolean stats = false;  // Print the AIs' search statistics
 
         // Parse the arguments
         for (String arg: args) {
@@ -311,6 +336,8 @@ public class PlayGame {
                     repeat = Integer.parseInt(params[1]); break;
                 case "--verbose":
                     verbose = Integer.parseInt(params[1]); break;
+                case "--path": path = params[1]; break;
+                case "--stats": stats = true; break;
                 default:
                     printUsage("Unrecognized parameter: " + arg);
                 }
@@ -319,7 +346,8 @@ public class PlayGame {
             }
         }
 
-        PlayGame c = new PlayGame(homeAI, awayAI, gameType, repeat, verbose);
+        PlayGame c = new PlayGame(homeAI, awayAI, gameType, repeat, verbose, path);
+        c.setStats(stats);
         c.run();
     }
 
@@ -336,6 +364,8 @@ public class PlayGame {
         System.err.println("         --game=XXX            -- Can be either NIM, TTT, OTHELLO_MICRO, OTHELLO_MINI, OTHELLO (default " + DEFAULT_GAME + ").");
         System.err.println("         --repeat=X            -- Number of games to play (default 1).");
         System.err.println("         --verbose=X           -- 0=quiet, >0=Output more stuff.");
+        System.err.println("         --path=DIR            -- Directory of the AIs' record files (default " + AbstractAI.DATA_DIR + ").");
+        System.err.println("         --stats               -- Print the AIs' search statistics per move and per game.");
         if (message != null)
             System.err.println("       " + message);
         System.exit(1);
@@ -0,0 +1,36 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * PonderingAI:
+ *    An AI that can think on the opponent's time.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+/***********************************************************
+ * An AI that keeps searching while the opponent is thinking.
+ *   The client calls ponder() whenever it is waiting for the opponent
+ *   (so it may be called many times for the same position), and
+ *   computeMove uses whatever the pondering found.  The server's clock
+ *   only charges us for our own turns, so this time is free.
+ ***********************************************************/
+public interface PonderingAI extends AI {
+    /**
+     * Start thinking about the attached game's position if it is the opponent's turn
+     * (and it isn't being thought about already).  Returns at once - the search runs
+     * in the background until stopPondering or computeMove.
+     **/
+    public void ponder();
+
+    /**
+     * Stop thinking on the opponent's time (and wait for the search to finish).
+     * What was found is kept for the next computeMove.
+     **/
+    public void stopPondering();
+}
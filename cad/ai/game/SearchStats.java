@@ -0,0 +1,126 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * SearchStats:
+ *    What a search did - for one move, or added up over a game.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+/***********************************************************
+ * Counters of a search and the rates worked out from them.
+ *   nodes        positions visited (including leaves)
+ *   leaves       positions evaluated at the depth limit
+ *   ttProbes     transposition table lookups, ttHits how many found the position
+ *   cutoffs      nodes that failed high, firstCutoffs how many on the first move tried
+ *   depth        depth reached (of the deepest completed iteration)
+ *   timeMs       time taken
+ *   searches     how many searches were added together (1 for a move)
+ * A counter a search doesn't keep (e.g. no transposition table) stays 0
+ * and its rate is reported as n/a.
+ ***********************************************************/
+public class SearchStats {
+    private long nodes, leaves, ttProbes, ttHits, cutoffs, firstCutoffs;
+    private long depthTotal;  // Sum of the depths (depth for one search)
+    private int maxDepth;
+    private long timeMs;
+    private int searches;
+
+    /** Empty totals (add searches to them) **/
+    public SearchStats() { }
+
+    /** One search **/
+    public SearchStats(long nodes, long leaves, long ttProbes, long ttHits, long cutoffs, long firstCutoffs, int depth, long timeMs) {
+        this.nodes = nodes;
+        this.leaves = leaves;
+        this.ttProbes = ttProbes;
+        this.ttHits = ttHits;
+        this.cutoffs = cutoffs;
+        this.firstCutoffs = firstCutoffs;
+        this.depthTotal = depth;
+        this.maxDepth = depth;
+        this.timeMs = timeMs;
+        this.searches = 1;
+    }
+
+    /** Add another search (or set of them) to these totals **/
+    public synchronized void add(SearchStats s) {
+        nodes += s.nodes;
+        leaves += s.leaves;
+        ttProbes += s.ttProbes;
+        ttHits += s.ttHits;
+        cutoffs += s.cutoffs;
+        firstCutoffs += s.firstCutoffs;
+        depthTotal += s.depthTotal;
+        maxDepth = Math.max(maxDepth, s.maxDepth);
+        timeMs += s.timeMs;
+        searches += s.searches;
+    }
+
+    /** Set the time taken (when it is only known after the search is put together) **/
+    public void setTime(long timeMs) { this.timeMs = timeMs; }
+
+    public long getNodes() { return nodes; }
+    public long getLeaves() { return leaves; }
+    public long getTtProbes() { return ttProbes; }
+    public long getTtHits() { return ttHits; }
+    public long getCutoffs() { return cutoffs; }
+    public long getFirstCutoffs() { return firstCutoffs; }
+    public long getTime() { return timeMs; }
+    public int getSearches() { return searches; }
+    public int getMaxDepth() { return maxDepth; }
+
+    /** Depth reached (the average for totals) **/
+    public double getDepth() { return searches == 0 ? 0 : (double) depthTotal / searches; }
+
+    /** Fraction of the lookups that found the position (NaN if there were none) **/
+    public double getTtHitRate() { return ttProbes == 0 ? Double.NaN : (double) ttHits / ttProbes; }
+
+    /** Fraction of the interior nodes that failed high (NaN if not counted) **/
+    public double getCutoffRate() {
+        long interior = nodes - leaves;
+        return (cutoffs == 0 || interior <= 0) ? Double.NaN : (double) cutoffs / interior;
+    }
+
+    /** Fraction of the cutoffs made by the first move tried (NaN if not counted) **/
+    public double getFirstCutoffRate() { return cutoffs == 0 ? Double.NaN : (double) firstCutoffs / cutoffs; }
+
+    /** Nodes per second **/
+    public double getNodesPerSecond() { return nodes * 1000.0 / Math.max(1, timeMs); }
+
+    /**
+     * Effective branching factor: the b with b^depth = nodes per search.
+     **/
+    public double getBranchingFactor() {
+        double depth = getDepth();
+        return (depth <= 0 || searches == 0) ? Double.NaN : Math.pow((double) nodes / searches, 1.0 / depth);
+    }
+
+    private static String percent(double rate) { return Double.isNaN(rate) ? "n/a" : String.format("%.1f%%", 100 * rate); }
+
+    private static String number(double x) { return Double.isNaN(x) ? "n/a" : String.format("%.2f", x); }
+
+    /** One line for a move **/
+    public String toString() {
+        return String.format("depth %s nodes %d leaves %d tt %s cut %s (first %s) %d ms %.0f n/s ebf %s",
+                             searches == 1 ? "" + maxDepth : String.format("%.1f", getDepth()), nodes, leaves,
+                             percent(getTtHitRate()), percent(getCutoffRate()), percent(getFirstCutoffRate()),
+                             timeMs, getNodesPerSecond(), number(getBranchingFactor()));
+    }
+
+    /** A summary of the totals for a game **/
+    public String summary() {
+        return String.format("%d searches, depth %.1f avg (%d max), %d nodes (%d per search), tt %s, cut %s (first %s), " +
+                             "%d ms (%d per search), %.0f n/s, ebf %s",
+                             searches, getDepth(), maxDepth, nodes, searches == 0 ? 0 : nodes / searches,
+                             percent(getTtHitRate()), percent(getCutoffRate()), percent(getFirstCutoffRate()),
+                             timeMs, searches == 0 ? 0 : timeMs / searches, getNodesPerSecond(),
+                             number(getBranchingFactor()));
+    }
+}
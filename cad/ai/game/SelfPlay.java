@@ -0,0 +1,348 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * SelfPlay:
+ *    Plays AI against AI with no console, no protocol strings and many
+ *    games at once - for training data and overnight regression runs.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/***********************************************************
+ * Headless self-play.
+ *   Unlike PlayGame the games are driven directly through their typed
+ *   move methods (applyMove, updateState) - no "@GAME:..." messages.
+ *   Each thread has its own pair of AIs and plays games until there are none left.
+ *   Game i starts with a few random moves chosen with seed+i, so the games differ
+ *   but a run can be repeated (for the deterministic AIs).
+ *   Optionally writes
+ *     a results file: one line per game "game,type,winner,home,away,plies"
+ *       (winner 0=Home, 1=Away, -1=Tie; home/away are the final scores)
+ *     a positions file (Othello only): every position of every game with the
+ *       game's result, in the OthelloCorpus format used by OthelloTuner.
+ ***********************************************************/
+public class SelfPlay {
+    public static enum GameType { NIM, TTT, OTHELLO_MICRO, OTHELLO_MINI, OTHELLO };
+    private static final GameType DEFAULT_GAME = GameType.OTHELLO;
+    public static final int DEFAULT_GAMES = 100;
+    public static final int DEFAULT_DEPTH = 4;
+    public static final long DEFAULT_SEED = 350;
+
+    private GameType gameType;
+    private int numGames;
+    private int threads;
+    private int depth;           // Othello search depth (fixed, so the AI is deterministic)
+    private int randomPlies;     // Random moves at the start of each game
+    private long seed;
+    private int verbose;
+    private PrintWriter results;               // null = don't write
+    private OthelloCorpus.Writer positions;    // null = don't write
+    private AtomicInteger nextGame = new AtomicInteger();
+    private int homeWins, awayWins, ties, forfeits;
+    private long totalPlies;
+
+    /**
+     * @param randomPlies Random moves to start each game with (-1 = the default for the game)
+     **/
+    public SelfPlay(GameType gameType, int numGames, int threads, int depth, int randomPlies, long seed, int verbose) {
+        this.gameType = gameType;
+        this.numGames = numGames;
+        this.threads = Math.max(1, threads);
+        this.depth = depth;
+        this.randomPlies = (randomPlies >= 0) ? randomPlies :
+            (gameType == GameType.NIM) ? 0 : (gameType == GameType.TTT) ? 2 : 6;
+        this.seed = seed;
+        this.verbose = verbose;
+    }
+
+    /** Write one line per game to this file **/
+    public void setResultsFile(String fileName) throws IOException {
+        results = new PrintWriter(new BufferedWriter(new FileWriter(fileName)));
+        results.println("game,type,winner,home,away,plies");
+    }
+
+    /** Append every position to this corpus file (Othello only) **/
+    public void setPositionsFile(String fileName) throws IOException {
+        positions = new OthelloCorpus.Writer(fileName, true);
+    }
+
+    /**
+     * Play all the games (returns when they are done).
+     **/
+    public void run() throws InterruptedException, ExecutionException {
+        long start = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Void>> workers = new ArrayList<Future<Void>>();
+        for (int i = 0; i < threads; i++) workers.add(pool.submit(new Worker()));
+        try {
+            for (Future<Void> w : workers) w.get();
+        } finally {
+            pool.shutdownNow();
+            if (results != null) results.close();
+            if (positions != null) {
+                try { positions.close(); } catch (IOException e) { error("Could not finish the positions file: " + e.getMessage()); }
+            }
+        }
+
+        double seconds = Math.max(1, System.currentTimeMillis() - start) / 1000.0;
+        System.out.println(String.format("Played %d games of %s in %.1f s (%.1f games/s, %.1f plies/game)",
+                                         numGames, gameType, seconds, numGames / seconds,
+                                         numGames == 0 ? 0.0 : (double) totalPlies / numGames));
+        System.out.println("Home won " + homeWins + ", Away won " + awayWins + ", ties " + ties +
+                           (forfeits > 0 ? ", forfeits " + forfeits : ""));
+    }
+
+    /**
+     * Record a finished game.
+     * @param forfeit The player who made an illegal move (-1 = none)
+     **/
+    private synchronized void finished(int index, int winner, int home, int away, int plies, boolean forfeit) {
+        if (winner == 0) homeWins++;
+        else if (winner == 1) awayWins++;
+        else ties++;
+        if (forfeit) forfeits++;
+        totalPlies += plies;
+        String line = index + "," + gameType + "," + winner + "," + home + "," + away + "," + plies;
+        if (results != null) results.println(line);
+        if (verbose > 0) System.out.println(line + (forfeit ? " (forfeit)" : ""));
+    }
+
+    /***********************************************************
+     * One thread: its own AIs, playing games one after the other.
+     ***********************************************************/
+    private class Worker implements Callable<Void> {
+        private AI[] ai = new AI[2];
+
+        Worker() {
+            for (int p = 0; p < 2; p++) {
+                switch (gameType) {
+                case NIM: ai[p] = new NimAI(); break;
+                case TTT: ai[p] = new TicTacToeAI(null); break;  // Learns during the run, saves nothing
+                default:
+                    OthelloAlphaBetaAI othello = new OthelloAlphaBetaAI(null, 1);  // The fixed depth search has no table
+                    othello.setVerbose(0);
+                    othello.setFixedDepth(depth);
+                    ai[p] = othello;
+                }
+            }
+        }
+
+        public Void call() throws IOException {
+            try {
+                for (int i = nextGame.getAndIncrement(); i < numGames; i = nextGame.getAndIncrement()) {
+                    Random ran = new Random(seed + i);
+                    switch (gameType) {
+                    case NIM: playNim(i, ran); break;
+                    case TTT: playTicTacToe(i, ran); break;
+                    case OTHELLO_MICRO: playOthello(i, ran, 4, 4); break;
+                    case OTHELLO_MINI: playOthello(i, ran, 6, 6); break;
+                    case OTHELLO: playOthello(i, ran, 8, 8); break;
+                    }
+                }
+            } finally {
+                for (AI a : ai) a.end();
+            }
+            return null;
+        }
+
+        /** Let the AIs learn from the result (if they want to) **/
+        private void postWinner(int winner) {
+            char r = winner == 0 ? 'H' : winner == 1 ? 'A' : 'T';
+            for (AI a : ai) a.postWinner(r);
+        }
+
+        private void playOthello(int index, Random ran, int rows, int cols) throws IOException {
+            OthelloGame server = new OthelloGame(-1, null, null, true, 0, rows, cols);
+            OthelloGame[] side = new OthelloGame[2];
+            for (int p = 0; p < 2; p++) side[p] = new OthelloGame(p, null, ai[p], false, 0, rows, cols);
+            ArrayList<char[][]> boards = new ArrayList<char[][]>();
+            ArrayList<Integer> turns = new ArrayList<Integer>();
+            int plies = 0;
+            int forfeit = -1;
+            while (!server.isDone()) {
+                int t = server.getTurn();
+                char[][] board = (char[][]) server.getStateAsObject();
+                if (positions != null) {
+                    char[][] copy = new char[rows][];
+                    for (int r = 0; r < rows; r++) copy[r] = board[r].clone();
+                    boards.add(copy);
+                    turns.add(t);
+                }
+                OthelloGame.Action move;
+                if (plies < randomPlies) {
+                    ArrayList<OthelloGame.Action> actions = server.getActions(t);
+                    move = actions.get(ran.nextInt(actions.size()));
+                } else {
+                    side[t].updateState(t, board);
+                    move = OthelloGame.Action.parse(ai[t].computeMove());
+                }
+                if (!server.applyMove(t, move)) { forfeit = t; break; }
+                plies++;
+            }
+
+            server.computeScore();
+            int winner = (forfeit >= 0) ? 1 - forfeit : server.getWinner();
+            int home = server.getHomeScore(), away = server.getAwayScore();
+            if (positions != null && forfeit < 0)
+                for (int i = 0; i < boards.size(); i++) positions.add(boards.get(i), turns.get(i), home - away);
+            postWinner(winner);
+            finished(index, winner, home, away, plies, forfeit >= 0);
+        }
+
+        private void playTicTacToe(int index, Random ran) {
+            TicTacToeGame server = new TicTacToeGame(-1, null, null, true, 0);
+            TicTacToeGame[] side = new TicTacToeGame[2];
+            for (int p = 0; p < 2; p++) side[p] = new TicTacToeGame(p, null, ai[p], false, 0);
+            int plies = 0;
+            int forfeit = -1;
+            while (!server.isDone()) {
+                int t = server.getTurn();
+                char[] board = (char[]) server.getStateAsObject();
+                int slot;
+                if (plies < randomPlies) {
+                    do slot = ran.nextInt(board.length); while (board[slot] != ' ');
+                } else {
+                    side[t].updateState(t, board);
+                    try {
+                        slot = Integer.parseInt(ai[t].computeMove().trim());
+                    } catch (NumberFormatException e) {
+                        slot = -1;
+                    }
+                }
+                if (!server.applyMove(t, slot)) { forfeit = t; break; }
+                plies++;
+            }
+            int winner = (forfeit >= 0) ? 1 - forfeit : server.getWinner();
+            postWinner(winner);
+            finished(index, winner, 0, 0, plies, forfeit >= 0);
+        }
+
+        private void playNim(int index, Random ran) {
+            NimGame server = new NimGame(-1, null, null, true);
+            NimGame[] side = new NimGame[2];
+            for (int p = 0; p < 2; p++) side[p] = new NimGame(p, null, ai[p], false);
+            int plies = 0;
+            int forfeit = -1;
+            while (!server.isDone()) {
+                int t = server.getTurn();
+                int[] sticks = (int[]) server.getStateAsObject();
+                int row, take;
+                if (plies < randomPlies) {
+                    do row = ran.nextInt(sticks.length); while (sticks[row] == 0);
+                    take = 1 + ran.nextInt(sticks[row]);
+                } else {
+                    side[t].updateState(t, sticks);
+                    try {
+                        String[] move = ai[t].computeMove().split(",", 2);
+                        row = Integer.parseInt(move[0].trim());
+                        take = Integer.parseInt(move[1].trim());
+                    } catch (RuntimeException e) {
+                        row = take = -1;
+                    }
+                }
+                if (!server.applyMove(t, row, take)) { forfeit = t; break; }
+                plies++;
+            }
+            int winner = (forfeit >= 0) ? 1 - forfeit : server.getWinner();
+            postWinner(winner);
+            finished(index, winner, 0, 0, plies, forfeit >= 0);
+        }
+    }
+
+    private static void error(String message) { System.err.println("ERROR: " + message); }
+
+    /**
+     * The main entry point.
+     **/
+    public static void main(String[] args) {
+        GameType gameType = DEFAULT_GAME;
+        int numGames = DEFAULT_GAMES;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int depth = DEFAULT_DEPTH;
+        int randomPlies = -1;
+        long seed = DEFAULT_SEED;
+        int verbose = 0;
+        String resultsFile = null;
+        String positionsFile = null;
+
+        // Parse the arguments
+        for (String arg: args) {
+            try {
+                String[] params = arg.split("=",2);
+                switch (params[0]) {
+                case "--help": printUsage(null); break;
+                case "--game":
+                    switch (params[1].toUpperCase()) {
+                    case "NIM": gameType = GameType.NIM; break;
+                    case "TTT": gameType = GameType.TTT; break;
+                    case "OTHELLO_MICRO":
+                    case "MICRO": gameType = GameType.OTHELLO_MICRO; break;
+                    case "OTHELLO_MINI":
+                    case "MINI": gameType = GameType.OTHELLO_MINI; break;
+                    case "OTHELLO": gameType = GameType.OTHELLO; break;
+                    default: printUsage("Unrecognized game option: " + params[1]);
+                    }
+                    break;
+                case "--games": numGames = Integer.parseInt(params[1]); break;
+                case "--threads": threads = Integer.parseInt(params[1]); break;
+                case "--depth": depth = Integer.parseInt(params[1]); break;
+                case "--random": randomPlies = Integer.parseInt(params[1]); break;
+                case "--seed": seed = Long.parseLong(params[1]); break;
+                case "--results": resultsFile = params[1]; break;
+                case "--positions": positionsFile = params[1]; break;
+                case "--verbose": verbose = Integer.parseInt(params[1]); break;
+                default:
+                    printUsage("Unrecognized parameter: " + arg);
+                }
+            } catch (Exception e) {
+                printUsage("Error processing parameter: " + arg);
+            }
+        }
+        if (positionsFile != null && (gameType == GameType.NIM || gameType == GameType.TTT))
+            printUsage("Error: positions can only be written for Othello");
+
+        SelfPlay s = new SelfPlay(gameType, numGames, threads, depth, randomPlies, seed, verbose);
+        try {
+            if (resultsFile != null) s.setResultsFile(resultsFile);
+            if (positionsFile != null) s.setPositionsFile(positionsFile);
+            s.run();
+        } catch (Exception e) {
+            error("Self-play failed: " + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Print Usage message and exit
+     **/
+    public static void printUsage(String message) {
+        System.err.println("Usage: java cad.ai.game.SelfPlay [params]");
+        System.err.println("       Where params are:");
+        System.err.println("         --help                -- Print this usage message");
+        System.err.println("         --game=XXX            -- NIM, TTT, OTHELLO_MICRO, OTHELLO_MINI, OTHELLO (default " + DEFAULT_GAME + ").");
+        System.err.println("         --games=X             -- Number of games to play (default " + DEFAULT_GAMES + ").");
+        System.err.println("         --threads=X           -- Games played at once (default is the number of processors).");
+        System.err.println("         --depth=X             -- Othello search depth (default " + DEFAULT_DEPTH + ").");
+        System.err.println("         --random=X            -- Random moves to start each game with (default 6 Othello, 2 TTT, 0 NIM).");
+        System.err.println("         --seed=X              -- Seed for the random moves (default " + DEFAULT_SEED + ").");
+        System.err.println("         --results=FILE        -- Write one line per game to FILE.");
+        System.err.println("         --positions=FILE      -- Append every Othello position to FILE (for OthelloTuner).");
+        System.err.println("         --verbose=X           -- 0=quiet, >0=Print every result.");
+        if (message != null)
+            System.err.println("       " + message);
+        System.exit(1);
+    }
+}
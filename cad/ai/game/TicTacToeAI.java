@@ -35,9 +35,10 @@ public class TicTacToeAI extends AbstractAI {
     private int numGames = 0;
 	private static final double DEFAULT_BALANCER = 0.0;
     private double balancer = 100.0;
+    private boolean saveOnEnd = true;
 	public TicTacToeAI()
 	{
-		this("C:/Ai_Repo/SimpleAI/cad/ai/game/TTT-MasterRaceAI.txt");
+		this(DATA_DIR + "TTT-MasterRaceAI.txt");
 	}
     public TicTacToeAI(String fileName) 
     {
@@ -51,6 +52,7 @@ public class TicTacToeAI extends AbstractAI {
     	String boardState;
     	int wins, losses, ties;
     	double score;
+    	if (this.fileName == null) return;  // Nothing learned yet (and nothing saved)
     	try {
     		reader = new BufferedReader(new FileReader(this.fileName));
     		while ((line = reader.readLine()) != null) {
@@ -74,9 +76,15 @@ public class TicTacToeAI extends AbstractAI {
     	catch (Exception jeff) {
     		System.out.println("ERROR:" + jeff);
     	}
-    	
+
     }
 
+    /**
+     * Whether end() writes the records back to the file (e.g. false when testing
+     * a set of records without changing them)
+     **/
+    public synchronized void setSaveOnEnd(boolean save) { saveOnEnd = save; }
+
     public synchronized void attachGame(Game g) 
 	{
     	game = (TicTacToeGame) g;
@@ -198,6 +206,7 @@ public class TicTacToeAI extends AbstractAI {
     {
         // This AI probably wants to store (in a file) what
         // it has learned from playing all the games so far...
+    	if (this.fileName == null || !saveOnEnd) return;
     	try {
     		FileWriter fw = new FileWriter(this.fileName, false);
     		BufferedWriter bw = new BufferedWriter(fw);
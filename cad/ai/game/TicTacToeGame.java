@@ -157,6 +157,14 @@ public class TicTacToeGame implements Game {
         for (int i = 0; i < this.board.length; i++)
             this.board[i] = newBoard[i];
     }
+
+    /**
+     * Update the state to the given board with turn to move.  Copies contents.
+     **/
+    public synchronized void updateState(int turn, char[] newBoard) {
+        updateState(newBoard);
+        this.turn = turn;
+    }
     
     /**
      * Display the current state.  We'll use a text-based version here.
@@ -235,18 +243,28 @@ public class TicTacToeGame implements Game {
                     return  "ERROR:Selection (" + slot + ") is out of range.";
                 if (board[slot] != ' ')
                     return "ERROR:This slot is already taken!";
-                char symbol = (p == 0) ? 'X' : 'O';
-                board[slot] = symbol;
-                turn ^= 1;  // Switch turn from 0 to 1 or 1 to 0
-                changed = true;
-                computeWinner();
-                return "MESSAGE:Placed an " + symbol + " in slot " + slot + ".";
+                applyMove(p, slot);
+                return "MESSAGE:Placed an " + ((p == 0) ? 'X' : 'O') + " in slot " + slot + ".";
             } catch (Exception e) {
                 return "ERROR:Could not understand your move.  Please make sure you just pass an integer string (0-8).";
             }
         }
     }   
 
+    /**
+     * Player p marks slot (0-8) - the typed version of processMove(p, String).
+     * @return false (and nothing changes) if it isn't p's turn or the slot isn't free
+     **/
+    public boolean applyMove(int p, int slot) {
+        if (p != turn || done || slot < 0 || slot >= board.length || board[slot] != ' ')
+            return false;
+        board[slot] = (p == 0) ? 'X' : 'O';
+        turn ^= 1;  // Switch turn from 0 to 1 or 1 to 0
+        changed = true;
+        computeWinner();
+        return true;
+    }
+
     /**
      * Is it current user's turn?  Based on state information...
      **/
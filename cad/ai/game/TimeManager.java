@@ -0,0 +1,87 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * TimeManager:
+ *    Splits the game clock into a time budget for each move.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+/***********************************************************
+ * Keeps track of how much of our total game time has been used and
+ * decides how long the current move may take.
+ *   The server (Match) gives each player one clock for the whole game and
+ *   forfeits a player who runs out, so every move is budgeted from what is left.
+ *   Two limits are given for each move:
+ *     soft - don't start another iteration of the search after this.  It is half
+ *            the move's budget since a new iteration usually costs more than all
+ *            the earlier ones put together.
+ *     hard - abort the current iteration (never let the clock run out)
+ ***********************************************************/
+public class TimeManager {
+    public static final long DEFAULT_TOTAL_MS = 1000*93;  // Same as Match.DEFAULT_TIME
+    public static final long DEFAULT_OVERHEAD_MS = 250;  // Server + client polling and network per move
+    private static final long RESERVE_MS = 1000;         // Never plan to use the last second
+
+    private long totalMs;     // Time on the clock at the start of the game
+    private long overheadMs;  // Time charged to us for every move beyond our own thinking
+    private long usedMs;      // Time used so far in this game
+    private long start;       // When the current move started (ms)
+    private long softLimit;   // Time allowed for the current move (ms)
+    private long hardLimit;
+
+    public TimeManager() { this(DEFAULT_TOTAL_MS, DEFAULT_OVERHEAD_MS); }
+    public TimeManager(long totalMs, long overheadMs) {
+        this.totalMs = totalMs;
+        this.overheadMs = overheadMs;
+        newGame();
+    }
+
+    /** Reset the clock for a new game **/
+    public synchronized void newGame() { usedMs = 0; }
+
+    /**
+     * Start timing a move.
+     * @param movesLeft Estimate of how many more moves we have to make this game (including this one)
+     **/
+    public synchronized void startMove(int movesLeft) {
+        start = System.currentTimeMillis();
+        long remaining = getRemaining();
+        if (movesLeft < 1) movesLeft = 1;
+
+        // Spread what is left over the remaining moves (a couple extra for safety)
+        long budget = remaining / (movesLeft + 2);
+        softLimit = budget / 2;
+        // Let an iteration that is already running go on for a while longer - but never too long
+        hardLimit = Math.max(softLimit, Math.min(budget * 3, remaining / 4));
+    }
+
+    /** The move is done - charge the time (plus overhead) to the clock **/
+    public synchronized void endMove() {
+        usedMs += (System.currentTimeMillis() - start) + overheadMs;
+    }
+
+    /** Should the search stop starting new iterations? **/
+    public boolean softExpired() { return System.currentTimeMillis() - start >= softLimit; }
+
+    /** Must the search stop right now? **/
+    public boolean hardExpired() { return System.currentTimeMillis() - start >= hardLimit; }
+
+    /** Time (ms) available for the rest of the game **/
+    public synchronized long getRemaining() {
+        return Math.max(0, totalMs - usedMs - RESERVE_MS);
+    }
+
+    /** Time (ms) spent on the current move so far **/
+    public long getElapsed() { return System.currentTimeMillis() - start; }
+
+    /** Budget (ms) for the current move **/
+    public long getSoftLimit() { return softLimit; }
+    public long getHardLimit() { return hardLimit; }
+}
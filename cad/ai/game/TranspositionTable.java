@@ -0,0 +1,109 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Client
+ * This project is designed to link to a basic Game Server to test
+ * AI-based solutions.
+ *
+ * TranspositionTable:
+ *    Remembers the result of searching a position (keyed by its Zobrist hash)
+ *    so the same position reached by a different move order is not searched again.
+ *
+ * See README file for more details.
+ ********************/
+package cad.ai.game;
+
+/***********************************************************
+ * A fixed-size transposition table.
+ *   The table is a power-of-two array of longs, two per bucket:
+ *     slot 0 is depth-preferred (only replaced by a deeper search or an older generation)
+ *     slot 1 is always replaced.
+ *   Each entry is packed into a single long so no objects are created:
+ *     bits  0-15  score (signed)
+ *     bits 16-23  best move (square, NO_MOVE if none)
+ *     bits 24-31  depth searched
+ *     bits 32-33  bound type (EXACT, LOWER, UPPER) - never 0, so 0 means empty
+ *     bits 34-39  generation (the search that stored it)
+ *     bits 40-63  key check bits (the top 24 bits of the Zobrist key)
+ *   A single long is written at once, so threads may share a table without locks.
+ ***********************************************************/
+public class TranspositionTable {
+    public static final int DEFAULT_MEGABYTES = 16;
+    public static final int EXACT = 1;  // Score is the exact value
+    public static final int LOWER = 2;  // Score is a lower bound (search failed high)
+    public static final int UPPER = 3;  // Score is an upper bound (search failed low)
+    public static final int NO_MOVE = 255;
+
+    private final long[] table;
+    private final int mask;      // Bucket index mask
+    private int generation = 0;  // Bumped for every new search
+
+    /**
+     * Create a table that uses (at most) the given number of megabytes.
+     **/
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(4L, (long) megabytes * 1024 * 1024 / 8);
+        entries = Long.highestOneBit(Math.min(entries, 1L << 30));
+        table = new long[(int) entries];
+        mask = (int) (entries / 2) - 1;
+    }
+
+    /**
+     * Look up a position.
+     * @return the packed entry or 0 if the position is not in the table.
+     **/
+    public long probe(long key) {
+        int i = ((int) key & mask) << 1;
+        long check = key >>> 40;
+        long e = table[i];
+        if (e != 0L && (e >>> 40) == check) return e;
+        e = table[i + 1];
+        if (e != 0L && (e >>> 40) == check) return e;
+        return 0L;
+    }
+
+    /**
+     * Store the result of searching a position.
+     **/
+    public void store(long key, int depth, int bound, int score, int move) {
+        int i = ((int) key & mask) << 1;
+        if (score > Short.MAX_VALUE) score = Short.MAX_VALUE;
+        if (score < Short.MIN_VALUE) score = Short.MIN_VALUE;
+        if (depth > 255) depth = 255;
+        long e = ((key >>> 40) << 40)
+            | ((long) (generation & 63) << 34)
+            | ((long) bound << 32)
+            | ((long) depth << 24)
+            | ((long) (move & 255) << 16)
+            | (score & 0xFFFFL);
+
+        long old = table[i];
+        if (old == 0L || (old >>> 40) == (key >>> 40) || depth(old) <= depth
+            || ((old >>> 34) & 63) != (generation & 63))
+            table[i] = e;      // Deeper (or stale) - goes in the depth-preferred slot
+        else
+            table[i + 1] = e;  // Always replace
+    }
+
+    /** Unpack the fields of an entry **/
+    public static int score(long entry) { return (short) entry; }
+    public static int move(long entry) { return (int) (entry >>> 16) & 255; }
+    public static int depth(long entry) { return (int) (entry >>> 24) & 255; }
+    public static int bound(long entry) { return (int) (entry >>> 32) & 3; }
+
+    /**
+     * Start a new search.  Entries from older searches are kept (and used)
+     * but may be replaced in the depth-preferred slot.
+     **/
+    public void newSearch() { generation++; }
+
+    /** Forget everything (e.g. when a new game starts) **/
+    public void clear() {
+        java.util.Arrays.fill(table, 0L);
+        generation = 0;
+    }
+
+    /** Number of entries the table can hold **/
+    public int getCapacity() { return table.length; }
+}
@@ -33,15 +33,28 @@ public class ClientConnection implements Callable<Integer> {
     private Player player = null;           // The player
     private Deque<String> messages;    // Messages to transmit to client
     private GameServer server = null;  // The game server
+    private NioFrontEnd.Client channel = null;  // The client when served by the NioFrontEnd (no socket or thread of our own)
+    private boolean blocking = false;  // Block on input, with a writer thread for output (the server's virtual thread mode)
     
     ClientConnection(Socket sock, GameServer server) throws IOException {
         this.sock = sock;
         this.server = server;
+        this.blocking = server.usesVirtualThreads();
         this.out = new PrintWriter(sock.getOutputStream());
         this.in = new BufferedReader(new InputStreamReader(sock.getInputStream()));
         this.messages = new ArrayDeque<String>();
     }
 
+    /**
+     * A connection served by the NioFrontEnd: its selector passes in each line (receive)
+     * and writes out whatever is posted.  call is not used.
+     **/
+    ClientConnection(NioFrontEnd.Client channel, GameServer server) {
+        this.channel = channel;
+        this.server = server;
+        this.messages = new ArrayDeque<String>();
+    }
+
     /**
      * Returns a "unique" id for this client connection... for debugging mainly.
      **/
@@ -53,6 +66,7 @@ public class ClientConnection implements Callable<Integer> {
      * Returns a "unique" header string - for debugging mainly.
      **/
     private String header() {
+        if (channel != null) return "Client (" + channel.getRemote() + "): ";
         return "Client (" +
             sock.getInetAddress() + ":" + sock.getPort() + "): ";
     }
@@ -67,6 +81,11 @@ public class ClientConnection implements Callable<Integer> {
      **/
     public Integer call() {
         debug("Running...");
+        if (blocking) {
+            server.execute(this::writeBlocking);
+            readBlocking();
+            return 0;
+        }
         while (in != null && out != null) {
             try {
                 processInput();
@@ -83,26 +102,79 @@ public class ClientConnection implements Callable<Integer> {
     }
 
     /**
-     * Close the connection (can also be used to stop the thread)
+     * Wait for each line from the client and process it as soon as it arrives (all of them -
+     * this thread has nothing else to do).  Output is written by writeBlocking.
      **/
-    public synchronized void close() {
+    private void readBlocking() {
+        BufferedReader reader = in;
         try {
-            if (player != null && player.getConnection() == this) player.setConnection(null);
-            if (in != null) in.close();
-            if (out != null) out.close();
-            if (sock != null) sock.close();
+            String message;
+            while (reader != null && (message = reader.readLine()) != null)
+                processInput(message);
         } catch (IOException e) {
-            debug("Error trying to close client connection: " + e.getMessage());
-        } finally {
-            in = null; out = null; sock = null;
-        }		
+            debug("I/O Exception: Ending connection. " + e.getMessage());
+        }
+        close();
+    }
+
+    /**
+     * Wait for messages to be posted and write them - with no lock held, so a client
+     * that stops reading only holds up this thread, not whoever posted to it.
+     **/
+    private void writeBlocking() {
+        while (true) {
+            PrintWriter writer;
+            String[] batch;
+            synchronized (this) {
+                while (messages.isEmpty() && out != null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) { }
+                }
+                if (out == null) return;  // Closed
+                writer = out;
+                batch = messages.toArray(new String[messages.size()]);
+                messages.clear();
+            }
+            for (String m: batch) writer.print(m);
+            writer.flush();
+        }
+    }
+
+    /**
+     * Close the connection (can also be used to stop the thread)
+     *   The player and server are told with this connection's lock released - they
+     *   lock themselves, and hold their own locks while posting to connections.
+     **/
+    public void close() {
+        Player p;
+        synchronized (this) {
+            p = player;
+            try {
+                if (channel != null) channel.close();
+                if (in != null) in.close();
+                if (out != null) out.close();
+                if (sock != null) sock.close();
+            } catch (IOException e) {
+                debug("Error trying to close client connection: " + e.getMessage());
+            } finally {
+                in = null; out = null; sock = null;
+                notifyAll();  // Stops writeBlocking
+            }
+        }
+        if (p != null && p.getConnection() == this) p.setConnection(null);
+        server.removeConnection(this);
     }
 
     /**
      * Post a message to be transmitted to the Client (done next chance by Client Thread)
      **/
     public synchronized void postMessage(String message) {
-        messages.addLast(message);   // Store the message in the messages Queue.
+        if (channel != null) channel.send(message);  // The selector writes it as soon as it can
+        else {
+            messages.addLast(message);   // Store the message in the messages Queue.
+            if (blocking) notifyAll();   // ... and wake writeBlocking
+        }
     }
 
     /**
@@ -110,7 +182,7 @@ public class ClientConnection implements Callable<Integer> {
      * This also appends a new line to end of message.
      **/
     public synchronized void postMessageLn(String message) {
-        messages.addLast(message + "\n");   // Store the message in the messages Queue.
+        postMessage(message + "\n");
     }
 
     /**
@@ -144,6 +216,13 @@ public class ClientConnection implements Callable<Integer> {
         }
     }
 
+    /**
+     * A line from the client (NioFrontEnd connections - they have no thread to read it themselves)
+     **/
+    void receive(String message) {
+        processInput(message);
+    }
+
     /**
      * Process the message provided.  Uses protocol described in ServerProtocol.txt
      **/
@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.Iterator;
 
 /***********************************************************
@@ -30,6 +31,8 @@ import java.util.Iterator;
 public class GameServer {
     public static final int DEFAULT_PORT = 1350;  // The default port to use...
     public static final int DEFAULT_MAX_CON = 30; // Default max number of connections for this server.
+    public static final int DEFAULT_NIO_MAX_CON = 10000; // ... when served by the NioFrontEnd (no thread per connection)
+    public static final int MATCH_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
     public int maxConnections;                  // The maximum number of connections that the server will allow.
     public int port;                            // The port that this server listens on.
     private HashMap<Integer,Player> player;     // All the players connected to system
@@ -37,6 +40,10 @@ public class GameServer {
     private ArrayList<ClientConnection> conn;   // All client connections (paired with players)
     private ServerSocket serverSocket;   // The socket that is bound to and listening for the server.
     private ExecutorService executor;    // Used to create new threads
+    private ScheduledExecutorService matchScheduler = null;  // Runs the matches of every tournament (see Match.start)
+    private int selectors = 0;           // Selector threads of the NioFrontEnd (0 = a thread per connection instead)
+    private boolean virtual = false;     // Connections, matches and tournaments each block on a (virtual) thread of their own
+    private boolean makespan = false;    // Schedule tournaments with the MakespanScheduler
     
     /**
      * Default Constructor.
@@ -65,7 +72,9 @@ public class GameServer {
         case "OTHELLO": g = new OthelloFactory(8); break;
         default: return null;  // No game recognized...
         }
-        RRTournament rr = new RRTournament(g, owner);
+        if (matchScheduler == null) matchScheduler = Executors.newScheduledThreadPool(MATCH_THREADS);
+        RRTournament rr = new RRTournament(g, owner, matchScheduler, virtual ? executor : null);
+        if (makespan) rr.setScheduler(new MakespanScheduler());
         tour.put(rr.getID(), rr);
 
         // Start the Tournament Thread (BUT NOT THE TOURNAMENT)
@@ -127,15 +136,69 @@ public class GameServer {
         conn.add(c);  // Add connection to list of sockets
         FutureTask<Integer> task = new FutureTask<Integer>(c);
         executor.execute(task);
-        // WARNING: Client Connections are never removed... even if they die.  TBD.
     }
 
+    /**
+     * Register a client served by the NioFrontEnd (which does its I/O - no thread is started).
+     **/
+    synchronized ClientConnection addConnection(NioFrontEnd.Client client) throws IOException {
+        if (conn.size() >= maxConnections)
+            throw new IOException("Error: Maximum  number of clients (" + maxConnections + ") reached.");
+        ClientConnection c = new ClientConnection(client, this);
+        conn.add(c);
+        return c;
+    }
+
+    /**
+     * Run the task on a thread of its own (a virtual one with --virtual).
+     **/
+    void execute(Runnable task) { executor.execute(task); }
+
+    /**
+     * A client connection has closed - it no longer counts toward the maximum.
+     **/
+    synchronized void removeConnection(ClientConnection c) {
+        conn.remove(c);
+    }
+
+    /**
+     * Serve the clients from this many selector threads (NioFrontEnd) instead of
+     * a thread per connection (0, the default).
+     **/
+    public void setSelectors(int selectors) { this.selectors = selectors; }
+
+    /**
+     * Give every connection, match and tournament loop its own virtual thread (see
+     * VirtualThreads), blocking on its input instead of polling.
+     **/
+    public synchronized void setVirtualThreads(boolean virtual) {
+        if (virtual == this.virtual) return;
+        this.virtual = virtual;
+        executor = virtual ? VirtualThreads.newExecutorOrFallback() : Executors.newCachedThreadPool();
+    }
+
+    /** Do connections block on their own threads (rather than poll)? **/
+    public boolean usesVirtualThreads() { return virtual; }
+
+    /** Plan new tournaments in rounds to finish them sooner (see MakespanScheduler) **/
+    public void setMakespanScheduling(boolean makespan) { this.makespan = makespan; }
+
     /**
      * This is the main body of the server.  It will start up a (server) socket to listen for connections.
      * When any connections arrive, it adds them to a client list and registers them into an active tournament.
      */
     private void run() {
         System.out.println("The AI Game Server: Hello.  Is there anybody out there?");
+        if (selectors > 0) {
+            try {
+                new NioFrontEnd(this, port, selectors).run();
+            } catch (Exception e) {
+                System.err.println("ABORTING: " + e.getMessage());
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
+        }
         try {
             // Create a server socket bound to the given port
             serverSocket = new ServerSocket(port);
@@ -168,7 +231,10 @@ public class GameServer {
     public static void main(String[] args) {
         // Defaults to use
         int port = DEFAULT_PORT;
-        int mc = DEFAULT_MAX_CON;
+        int mc = -1;  // DEFAULT_MAX_CON (or DEFAULT_NIO_MAX_CON)
+        int selectors = 0;
+        boolean virtual = false;
+        boolean makespan = false;
 
         // Parse the arguments
         for (String arg: args) {
@@ -178,6 +244,13 @@ public class GameServer {
                 case "--help": printUsage(null); break;
                 case "--port": port = Integer.parseInt(params[1]); break;
                 case "--maxcon": mc = Integer.parseInt(params[1]); break;
+                case "--nio": selectors = (params.length > 1) ? Integer.parseInt(params[1]) : 1; break;
+                case "--virtual": virtual = true; break;
+                case "--schedule":
+                    if (params[1].equals("makespan")) makespan = true;
+                    else if (params[1].equals("greedy")) makespan = false;
+                    else printUsage("Unrecognized schedule: " + params[1]);
+                    break;
                 default:
                     printUsage("Unrecognized parameter: " + arg);
                 }
@@ -186,7 +259,12 @@ public class GameServer {
             }
         }	    
 
+        if (selectors < 0) printUsage("Error: the number of selectors can't be negative");
+        if (mc < 0) mc = (selectors > 0) ? DEFAULT_NIO_MAX_CON : DEFAULT_MAX_CON;
         GameServer s = new GameServer(port, mc);
+        s.setSelectors(selectors);
+        s.setVirtualThreads(virtual);
+        s.setMakespanScheduling(makespan);
         s.run();
     }
 
@@ -199,6 +277,14 @@ public class GameServer {
         System.err.println("         --help           Print this help message.");
         System.err.println("         --port=integer   The port to listen on.");
         System.err.println("         --maxcon=integer The maximum number of connections to support.");
+        System.err.println("                          DEFAULT is " + DEFAULT_MAX_CON + " (" + DEFAULT_NIO_MAX_CON + " with --nio)");
+        System.err.println("         --nio[=integer]  Serve every client from this many selector threads (default 1)");
+        System.err.println("                          rather than a thread per client.");
+        System.err.println("         --virtual        Run connections, matches and tournaments on virtual threads");
+        System.err.println("                          that block instead of polling (ordinary threads before Java 21).");
+        System.err.println("         --schedule=greedy|makespan  How tournaments choose their next matches:");
+        System.err.println("                          greedy   whoever has the most left plays first (DEFAULT)");
+        System.err.println("                          makespan planned rounds, backfilled, to finish soonest");
         if (message != null) System.err.println("       " + message);
         System.exit(1);
     }       
@@ -0,0 +1,350 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Server Project
+ * This project is designed to support multiple game platforms to test
+ * AI-based solutions.
+ *
+ * MakespanScheduler:
+ *    Plays a tournament in planned rounds, to finish it as soon as possible.
+ *
+ * See README file for more details.
+ ********************/
+
+package cad.ai.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/***********************************************************
+ * The matches are planned in rounds by the circle method: one player stays
+ * put while the rest rotate around it, so with n players (plus a bye if n is
+ * odd) each of the n-1 rounds pairs everybody up once, and the second leg
+ * (home and away swapped) repeats the rounds.  A round needs no barrier -
+ * a player free early backfills with the next match it can play with another
+ * free player, from whatever round.  Among the matches that could start:
+ *   - earliest round first (keeps to the plan),
+ *   - then the one whose busier player has the most predicted work left
+ *     (the critical path - that player bounds the makespan),
+ *   - then the longest match first.
+ * Match lengths are predicted from each player's observed time per move (the
+ * clock time of its finished matches) and the moves per game seen so far.
+ * Each player's predicted work left is kept up to date as matches are added,
+ * started and finished, so choosing only looks at the free players' matches.
+ * The makespan is predicted by simulating the rest of the schedule this way
+ * (from a copy, without the tournament's lock) - or, for more than
+ * MAX_SIMULATED matches, bounded from below.  It is reported when the
+ * tournament starts and, with the actual makespan, when it ends.
+ ***********************************************************/
+class MakespanScheduler extends MatchScheduler {
+    public static final long DEFAULT_MOVE_TIME = 100;  // Guess (ms) for a move before any have been seen
+    public static final int DEFAULT_MOVES = 20;         // ... and for the moves in a game
+    public static final int MAX_SIMULATED = 10000;      // Most matches left to predict the makespan of by simulation
+
+    private List<Player> players = new ArrayList<Player>();     // In the order they joined (their seats in the circle)
+    private Map<Match, Integer> round = new HashMap<Match, Integer>();
+    private boolean planned = false;                            // Are all the pending matches in a round?
+    private Map<Player, long[]> played = new HashMap<Player, long[]>();  // Per player: {moves, ms}
+    private long gameMoves = 0;                                 // Moves of all the finished matches
+    private long gameTime = 0;                                  // ... the time (ms) spent on them
+    private int games = 0;                                      // ... and how many there were
+    private Pace pace = new Pace(new HashMap<Player, Double>(), DEFAULT_MOVE_TIME, DEFAULT_MOVES / 2.0);
+    private Work work = new Work();                             // Predicted work left of each player
+    private Map<Match, Long> started = new HashMap<Match, Long>();  // Matches in progress: when they started
+    private long startTime = -1;                                // When the tournament was first started
+    private volatile long predicted = -1;                       // Predicted makespan (ms) at that point
+
+    @Override
+    void addPlayer(Player p) {
+        super.addPlayer(p);
+        players.add(p);
+        played.put(p, new long[2]);
+        planned = false;
+    }
+
+    @Override
+    void addMatch(Match m) {
+        super.addMatch(m);
+        work.add(m, pace, 1);
+        if (!round.containsKey(m)) planned = false;
+    }
+
+    @Override
+    void finished(Match m) {
+        super.finished(m);
+        started.remove(m);
+        round.remove(m);
+        long[] home = played.get(m.getHome());
+        long[] away = played.get(m.getAway());
+        home[0] += m.getMoves(0);
+        home[1] += m.getTimeUsed(0);
+        away[0] += m.getMoves(1);
+        away[1] += m.getTimeUsed(1);
+        gameMoves += m.getMoves(0) + m.getMoves(1);
+        gameTime += m.getTimeUsed(0) + m.getTimeUsed(1);
+        games++;
+
+        // The two players' pace (and everyone's average) has changed
+        Map<Player, Double> known = new HashMap<Player, Double>(pace.known);
+        for (Player p: new Player[] { m.getHome(), m.getAway() }) {
+            long[] t = played.get(p);
+            if (t[0] > 0) known.put(p, (double) t[1] / t[0]);
+        }
+        Pace old = pace;
+        pace = new Pace(known, (gameMoves > 0) ? (double) gameTime / gameMoves : DEFAULT_MOVE_TIME,
+                        (double) gameMoves / (2 * games));
+        work.repace(m.getHome(), old, pace, pending.get(m.getHome()));
+        work.repace(m.getAway(), old, pace, pending.get(m.getAway()));
+    }
+
+    @Override
+    void retry(Match m, Player busy) {
+        started.remove(m);
+        super.retry(m, busy);
+    }
+
+    @Override
+    Supplier<String> activated() {
+        plan();
+        if (startTime >= 0) return null;  // Only restarted
+        startTime = System.currentTimeMillis();
+        int n = players.size();
+        int rounds = (n < 2) ? 0 : 2 * (n + n % 2 - 1);  // Each leg has a round per seat but one
+        String matches = left + " matches in " + rounds + " rounds";
+        if (left > MAX_SIMULATED) {
+            predicted = lowerBound();
+            String message = "Predicted makespan at least " + seconds(predicted) + " for " + matches + ".";
+            return () -> message;
+        }
+        Supplier<Long> makespan = simulation();
+        return () -> {
+            predicted = makespan.get();
+            return "Predicted makespan " + seconds(predicted) + " for " + matches + ".";
+        };
+    }
+
+    @Override
+    Supplier<String> completed() {
+        if (startTime < 0) return null;
+        long actual = System.currentTimeMillis() - startTime;
+        return () -> "Makespan " + seconds(actual) + " (predicted " + seconds(predicted) + ").";
+    }
+
+    @Override
+    List<Match> next() {
+        if (!planned) plan();
+        List<Match> chosen = super.next();
+        long now = System.currentTimeMillis();
+        for (Match m: chosen) started.put(m, now);
+        return chosen;
+    }
+
+    @Override
+    protected List<Match> choose(Map<Player, ArrayDeque<Match>> queues, Set<Player> free) {
+        return choose(queues, free, work, pace, round);
+    }
+
+    /**
+     * Start free players' matches in round order (see the class description), taking
+     * them out of the queues and the work left.
+     **/
+    private static List<Match> choose(Map<Player, ArrayDeque<Match>> queues, Set<Player> free,
+                                      Work work, Pace pace, Map<Match, Integer> round) {
+        List<Match> candidates = new ArrayList<Match>();
+        for (Player p: free)
+            for (Match m: queues.get(p))
+                if (m.getHome() == p && free.contains(m.getAway())) candidates.add(m);
+        List<Match> chosen = new ArrayList<Match>();
+        if (candidates.isEmpty()) return chosen;
+
+        candidates.sort((a, b) -> {
+                int c = Integer.compare(round.getOrDefault(a, Integer.MAX_VALUE), round.getOrDefault(b, Integer.MAX_VALUE));
+                if (c == 0) c = Double.compare(work.critical(b, pace), work.critical(a, pace));
+                if (c == 0) c = Long.compare(pace.predict(b), pace.predict(a));
+                return c;
+            });
+        for (Match m: candidates) {
+            if (!free.contains(m.getHome()) || !free.contains(m.getAway())) continue;
+            take(m, queues, free);
+            work.add(m, pace, -1);
+            chosen.add(m);
+        }
+        return chosen;
+    }
+
+    /**
+     * Put every pending match in its round of the circle method.
+     **/
+    private void plan() {
+        planned = true;
+        int n = players.size();
+        int size = n + n % 2;  // Seat n is the bye
+        for (int r = 0; r < size - 1; r++) {
+            int[] seat = new int[size];
+            seat[0] = size - 1;  // Stays put
+            for (int i = 1; i < size; i++) seat[i] = (r + i - 1) % (size - 1);
+            for (int k = 0; k < size / 2; k++) {
+                int a = seat[k], b = seat[size - 1 - k];
+                if (a >= n || b >= n) continue;  // Sits this round out
+                Player home = players.get((r % 2 == 0) ? a : b);  // Alternate who is home first
+                Player away = players.get((r % 2 == 0) ? b : a);
+                setRound(home, away, r);
+                setRound(away, home, r + size - 1);
+            }
+        }
+    }
+
+    private void setRound(Player home, Player away, int r) {
+        for (Match m: pending.get(home)) {
+            if (m.getHome() == home && m.getAway() == away) {
+                round.put(m, r);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copy the schedule as it stands; the simulation returned plays the rest of the
+     * tournament from the copy (as choose would, with predicted match lengths) and
+     * needs no lock.
+     * @return Predicted makespan (ms) from when the tournament started
+     **/
+    private Supplier<Long> simulation() {
+        long now = System.currentTimeMillis();
+        long begun = startTime;
+        Map<Player, ArrayDeque<Match>> queues = new HashMap<Player, ArrayDeque<Match>>();
+        for (Map.Entry<Player, ArrayDeque<Match>> e: pending.entrySet())
+            queues.put(e.getKey(), new ArrayDeque<Match>(e.getValue()));
+        Set<Player> free = new HashSet<Player>(idle);
+        Work work = this.work.copy();
+        Pace pace = this.pace;  // Never changed - replaced
+        Map<Match, Integer> round = new HashMap<Match, Integer>(this.round);
+        List<Event> running = new ArrayList<Event>();
+        for (Map.Entry<Match, Long> e: started.entrySet())
+            running.add(new Event(Math.max(now, e.getValue() + pace.predict(e.getKey())), e.getKey()));
+
+        return () -> {
+            PriorityQueue<Event> events = new PriorityQueue<Event>((a, b) -> Long.compare(a.time, b.time));
+            events.addAll(running);
+            long time = now, end = now;
+            while (true) {
+                for (Match m: choose(queues, free, work, pace, round)) events.add(new Event(time + pace.predict(m), m));
+                Event e = events.poll();
+                if (e == null) break;
+                time = end = e.time;
+                free.add(e.match.getHome());
+                free.add(e.match.getAway());
+            }
+            return end - begun;
+        };
+    }
+
+    /**
+     * The makespan can't be less than the longest work left of any player, nor than all
+     * the work left shared out between every pair of players at once.
+     * @return That bound (ms) from when the tournament started
+     **/
+    private long lowerBound() {
+        double longest = 0, total = 0;
+        for (Player p: players) {
+            double w = work.of(p, pace);
+            longest = Math.max(longest, w);
+            total += w;  // Every match counts for both its players...
+        }
+        double shared = (players.size() < 2) ? 0 : total / 2 / (players.size() / 2);
+        return System.currentTimeMillis() - startTime + (long) Math.max(longest, shared);
+    }
+
+    private static String seconds(long ms) { return String.format("%.1f s", ms / 1000.0); }
+
+    /***********************************************************
+     * What is known of the players' pace when the matches are predicted.
+     * Never changed (a new one replaces it), so a simulation can keep using it.
+     ***********************************************************/
+    private static class Pace {
+        final Map<Player, Double> known;  // Time (ms) per move of each player seen so far
+        final double average;              // ... of everyone (for those not seen yet)
+        final double movesPerSide;         // Moves each player makes in a game
+
+        Pace(Map<Player, Double> known, double average, double movesPerSide) {
+            this.known = known;
+            this.average = average;
+            this.movesPerSide = movesPerSide;
+        }
+
+        double moveTime(Player p) {
+            Double t = known.get(p);
+            return (t == null) ? average : t;
+        }
+
+        /** Predicted length (ms) of the match: each player makes half the moves, at its usual pace **/
+        long predict(Match m) {
+            return (long) (movesPerSide * (moveTime(m.getHome()) + moveTime(m.getAway())));
+        }
+    }
+
+    /***********************************************************
+     * The predicted time of each player's matches left, kept as sums so a match
+     * added or taken, or a player's pace changing, only updates a few of them.
+     ***********************************************************/
+    private static class Work {
+        // Per player: {matches left, time per move of those opponents seen so far (summed), opponents not seen yet}
+        private Map<Player, double[]> table = new HashMap<Player, double[]>();
+
+        Work copy() {
+            Work w = new Work();
+            for (Map.Entry<Player, double[]> e: table.entrySet()) w.table.put(e.getKey(), e.getValue().clone());
+            return w;
+        }
+
+        /** Add (sign 1) or take away (-1) the match **/
+        void add(Match m, Pace pace, int sign) {
+            side(m.getHome(), m.getAway(), pace, sign);
+            side(m.getAway(), m.getHome(), pace, sign);
+        }
+
+        private void side(Player p, Player opponent, Pace pace, int sign) {
+            double[] w = table.computeIfAbsent(p, k -> new double[3]);
+            w[0] += sign;
+            Double t = pace.known.get(opponent);
+            if (t == null) w[2] += sign; else w[1] += sign * t;
+        }
+
+        /** The player's pace has changed - so has its opponents' work, in the given matches left **/
+        void repace(Player p, Pace old, Pace now, Iterable<Match> matches) {
+            Double before = old.known.get(p), after = now.known.get(p);
+            for (Match m: matches) {
+                double[] w = table.get((m.getHome() == p) ? m.getAway() : m.getHome());
+                if (before == null) w[2]--; else w[1] -= before;
+                if (after == null) w[2]++; else w[1] += after;
+            }
+        }
+
+        /** Predicted time (ms) of the player's matches left **/
+        double of(Player p, Pace pace) {
+            double[] w = table.get(p);
+            if (w == null) return 0;
+            return pace.movesPerSide * (w[0] * pace.moveTime(p) + w[1] + w[2] * pace.average);
+        }
+
+        /** Work left of the busier of the match's players **/
+        double critical(Match m, Pace pace) {
+            return Math.max(of(m.getHome(), pace), of(m.getAway(), pace));
+        }
+    }
+
+    /** A simulated match ending **/
+    private static class Event {
+        long time;
+        Match match;
+        Event(long time, Match match) { this.time = time; this.match = match; }
+    }
+}
@@ -12,8 +12,14 @@ package cad.ai.server;
 
 import java.util.ArrayList;
 import java.util.concurrent.Callable;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import cad.ai.game.*;
 
 /***********************************************************
@@ -22,6 +28,16 @@ import cad.ai.game.*;
  * will play the game.  The game to play is provided at construction
  * time.
  * Yes, we could make these based on multiple players - but not needed... yet.
+ *
+ * A match is driven by events - a move arriving or a clock running out -
+ * and never polls.  It can be played two ways:
+ *   start  - moves are processed by the given scheduler as they arrive and the
+ *            scheduler also fires when the clock of the player to move runs
+ *            out, so no thread is held between moves (one small pool can run
+ *            hundreds of matches).
+ *   call   - the calling thread waits on the message queue (for at most the
+ *            time left on the clock) and plays the whole match.
+ * Either way the onFinish callback (if any) is told when the match is over.
  ***********************************************************/
 public class Match implements Callable<Integer> {
     public static enum State { NOT_STARTED, IN_PROGRESS, TIE, HOME_WIN, AWAY_WIN };
@@ -34,58 +50,228 @@ public class Match implements Callable<Integer> {
     private Player home; // Player one
     private Player away; // Player two
     private Game game;   // Game to play
-    private State state = State.NOT_STARTED;    // State of the match
-    private Deque<Message> messages;             // Messages from Players to the Game
+    private volatile State state = State.NOT_STARTED;    // State of the match
+    private BlockingQueue<Message> messages;     // Messages from Players to the Game
     private int errorCount = 0; // # consecutive errors (inv. moves)
     private long[] timeRemaining;  // Time remaining per player (in MS)
+    private int[] moves = new int[2];  // Moves made per player (well, turns - the clock only counts those)
     public static long DEFAULT_TIME = 1000*93;
 
+    private volatile ScheduledExecutorService scheduler = null;  // Runs the match (start) - null if a thread is running call
+    private AtomicBoolean drainScheduled = new AtomicBoolean();  // A task to process the messages is waiting to run
+    private ScheduledFuture<?> clockExpiry;   // Fires when the clock of the player to move runs out
+    private int clockTurn = -1;               // Whose clock is running (-1 = nobody's)
+    private long clockStart;                  // When it started running
+    private boolean forfeit = false;          // Lost on time
+    private Consumer<Match> onFinish = null;  // Told when the match is over
+    private boolean finishPending = false;    // Over, but onFinish hasn't been told yet
+
     public Match(Player h, Player a, Game g) {
         this.home = h;
         this.away = a;
         this.game = g;
         this.state = State.NOT_STARTED;
         this.errorCount = 0;
-        this.messages = new ArrayDeque<Message>();
+        this.messages = new LinkedBlockingQueue<Message>();
         this.timeRemaining = new long[2];
         this.timeRemaining[0] = DEFAULT_TIME;
         this.timeRemaining[1] = DEFAULT_TIME;
     }
 
+    /**
+     * Play the match on the calling thread: wait for each message (or the clock
+     * to run out) and process it.
+     **/
     public Integer call() {
+        synchronized (this) { begin(); }
+        while (true) {
+            long wait;
+            synchronized (this) {
+                if (state != State.IN_PROGRESS) break;
+                wait = clockLeft();
+            }
+            Message m = null;
+            try {
+                m = messages.poll(Math.max(1, wait), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) { }
+            synchronized (this) {
+                if (m != null) process(m);
+                checkClock();
+            }
+        }
+        notifyFinished();
+        return new Integer(0);
+    }
+
+    /**
+     * Play the match on the scheduler: moves are processed as they arrive and
+     * the clock is a scheduled task.  Returns at once.
+     **/
+    public void start(ScheduledExecutorService scheduler) {
+        synchronized (this) {
+            this.scheduler = scheduler;
+            begin();
+            if (!messages.isEmpty()) scheduleDrain();  // Posted before we started
+        }
+        notifyFinished();
+    }
+
+    /**
+     * Tell onFinish about the end of the match (with no lock held - it may well
+     * want to start other matches).
+     **/
+    public synchronized void setOnFinish(Consumer<Match> onFinish) { this.onFinish = onFinish; }
+
+    /** Accessor and mutator methods **/
+    public State getState() { return state; }
+    public Player getHome() { return home; }
+    public Player getAway() { return away; }
+
+    /** Time (ms) the home (0) or away (1) player has spent on its moves so far **/
+    public synchronized long getTimeUsed(int player) {
+        long used = DEFAULT_TIME - timeRemaining[player];
+        if (player == clockTurn) used += System.currentTimeMillis() - clockStart;
+        return used;
+    }
+
+    /** Moves the home (0) or away (1) player has made so far **/
+    public synchronized int getMoves(int player) { return moves[player]; }
+
+    // Post a message from a Player to the Game.
+    //   No lock - the connection posting it may be holding its own, and the match locks connections to reply.
+    public void postMessage(Player originator, String message) {
+        messages.add(new Message(originator, message));   // Store the message in the messages Queue.
+        if (scheduler != null) scheduleDrain();            // ... and wake the match
+    }
+
+    // Process the messages that were received from Players.
+    public void processMessages() {
+        drainScheduled.set(false);
+        synchronized (this) {
+            Message m;
+            while ((m = messages.poll()) != null) process(m);
+        }
+        notifyFinished();
+    }
+
+    /**
+     * Start the match: tell the players and start the clock.
+     **/
+    private void begin() {
         state = State.IN_PROGRESS;
         home.postMessage("@GAME:START:H:"+away.getName());
         away.postMessage("@GAME:START:A:"+home.getName());
+        clockTurn = -1;
+        update();
+    }
 
-        // Start the clock going
-        long time = System.currentTimeMillis();
-
-        boolean forfeit = false;
-        while (!game.isDone()) {
-            long newTime = System.currentTimeMillis();
-            int turn = game.getTurn();  // Whose turn is it...
-            timeRemaining[turn] -= (newTime - time); // Tick away some time...
-            time = newTime;
-            if (timeRemaining[turn] <= 0) {
-                // The player is out of time
-                game.resign(turn);
-                System.out.println(header() + 
-                                   "Time exceeded for Player " + turn +
-                                   ". Forfeiting!");
-                forfeit = true;
-            } else {
-                String state = game.getState(false);
-                if (state != null) {
-                    // The state has changed since last call
-                    home.postMessage("@GAME:STATE:" + state);
-                    away.postMessage("@GAME:STATE:" + state);
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true))
+            scheduler.execute(this::processMessages);
+    }
+
+    /**
+     * Process one message from a Player.
+     **/
+    private void process(Message m) {
+        if (state != State.IN_PROGRESS) return;  // Too late
+        checkClock();  // Only if it arrived in time
+        if (state != State.IN_PROGRESS) return;
+        if (m.p != home && m.p != away) {
+            // Some other player sent it???
+            m.p.postMessage("@GAME:ERROR:[Programming error] This player is not part of this game.");
+        } else {
+            String response = game.processMove(m.p == home ? 0 : 1, m.message);
+            m.p.postMessage("@GAME:" + response);
+            if (response.startsWith("ERROR")) {
+                // There was an error with the move, have there been too many?
+                if (errorCount++ > 5) {
+                    // Player forfeits
+                    game.resign(m.p == home ? 0 : 1);
+                } else {
+                    // resend game state (as a reminder)
+                    m.p.postMessage("@GAME:STATE:" + game.getState(true));
                 }
-                processMessages();
-                try { Thread.sleep(100); } catch (Exception e) { }  // Don't hog resources...
+            } else {
+                errorCount = 0;  // Reset it.
             }
         }
+        update();
+    }
+
+    /**
+     * After the game has changed: post the new state, switch the clock to the
+     * player to move - or finish the match if the game is over.
+     **/
+    private void update() {
+        if (game.isDone()) {
+            finish();
+            return;
+        }
+        String state = game.getState(false);
+        if (state != null) {
+            // The state has changed since it was last sent
+            home.postMessage("@GAME:STATE:" + state);
+            away.postMessage("@GAME:STATE:" + state);
+        }
+        int turn = game.getTurn();  // Whose turn is it...
+        if (turn == clockTurn) return;  // Their clock is already running
+        long now = System.currentTimeMillis();
+        if (clockTurn >= 0) {
+            timeRemaining[clockTurn] -= (now - clockStart);  // Tick away some time...
+            moves[clockTurn]++;
+        }
+        clockTurn = turn;
+        clockStart = now;
+        if (scheduler != null) scheduleExpiry();
+    }
+
+    /** Time (ms) left on the running clock **/
+    private long clockLeft() {
+        if (clockTurn < 0) return Long.MAX_VALUE;
+        return timeRemaining[clockTurn] - (System.currentTimeMillis() - clockStart);
+    }
+
+    private void scheduleExpiry() {
+        if (clockExpiry != null) clockExpiry.cancel(false);
+        clockExpiry = (clockTurn < 0) ? null :
+            scheduler.schedule(() -> { expire(); notifyFinished(); }, Math.max(1, clockLeft()), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void expire() {
+        clockExpiry = null;
+        checkClock();
+        if (state == State.IN_PROGRESS && clockExpiry == null) scheduleExpiry();  // Woke a little early
+    }
+
+    /**
+     * Forfeit the player to move if their time is up.
+     **/
+    private void checkClock() {
+        if (state != State.IN_PROGRESS || clockTurn < 0 || clockLeft() > 0) return;
+        // The player is out of time
+        timeRemaining[clockTurn] = clockLeft();
+        clockStart = System.currentTimeMillis();
+        game.resign(clockTurn);
+        System.out.println(header() + 
+                           "Time exceeded for Player " + clockTurn +
+                           ". Forfeiting!");
+        forfeit = true;
+        finish();
+    }
 
-        // Determine winner, set state, and post results to players
+    /**
+     * Determine winner, set state, and post results to players
+     **/
+    private void finish() {
+        if (clockExpiry != null) clockExpiry.cancel(false);
+        clockExpiry = null;
+        if (clockTurn >= 0) {
+            // Stop the clock (the last move counts too)
+            timeRemaining[clockTurn] -= (System.currentTimeMillis() - clockStart);
+            if (!forfeit) moves[clockTurn]++;
+            clockTurn = -1;
+        }
         int winner = game.getWinner();
         if (winner == 0) {
             state = State.HOME_WIN;
@@ -111,43 +297,20 @@ public class Match implements Callable<Integer> {
         // Free the players for another Match...
         home.clearMatch();
         away.clearMatch();
-        return new Integer(0);
-    }
-
-    /** Accessor and mutator methods **/
-    public State getState() { return state; }
-    public Player getHome() { return home; }
-    public Player getAway() { return away; }
-
-    // Post a message from a Player to the Game.
-    public synchronized void postMessage(Player originator, String message) {
-        messages.addLast(new Message(originator, message));   // Store the message in the messages Queue.
+        finishPending = true;
     }
 
-    // Process the messages that were received from Players.
-    public synchronized void processMessages() {
-        while (!messages.isEmpty()) {
-            Message m = messages.removeFirst();
-            if (m.p != home && m.p != away) {
-                // Some other player sent it???
-                m.p.postMessage("@GAME:ERROR:[Programming error] This player is not part of this game.");
-            } else {
-                String response = game.processMove(m.p == home ? 0 : 1, m.message);
-                m.p.postMessage("@GAME:" + response);
-                if (response.startsWith("ERROR")) {
-                    // There was an error with the move, have there been too many?
-                    if (errorCount++ > 5) {
-                        // Player forfeits
-                        game.resign(m.p == home ? 0 : 1);
-                    } else {
-                        // resend game state (as a reminder)
-                        m.p.postMessage("@GAME:STATE:" + game.getState(true));
-                    }
-                } else {
-                    errorCount = 0;  // Reset it.
-                }
-            }
+    /**
+     * If the match just finished, tell onFinish (called with no lock held).
+     **/
+    private void notifyFinished() {
+        Consumer<Match> callback;
+        synchronized (this) {
+            if (!finishPending) return;
+            finishPending = false;
+            callback = onFinish;
         }
+        if (callback != null) callback.accept(this);
     }
 
     /**
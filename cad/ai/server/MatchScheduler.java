@@ -0,0 +1,138 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Server Project
+ * This project is designed to support multiple game platforms to test
+ * AI-based solutions.
+ *
+ * MatchScheduler:
+ *    Chooses which of a tournament's matches to start next.
+ *
+ * See README file for more details.
+ ********************/
+
+package cad.ai.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/***********************************************************
+ * Every player has a queue of its matches still to be played, and the
+ * players not in a match are kept in an idle set.  So finding the matches
+ * that can start only looks at the idle players' queues, never at the whole
+ * list of matches.
+ *   To finish sooner, the idle player with the most matches left goes first
+ * (it is the one the tournament will end up waiting for), against the idle
+ * opponent that also has the most left.
+ * Not thread-safe: the RRTournament calls it holding its own lock.
+ * Subclasses (MakespanScheduler) can choose differently - see choose.
+ ***********************************************************/
+class MatchScheduler {
+    protected Map<Player, ArrayDeque<Match>> pending = new HashMap<Player, ArrayDeque<Match>>();
+    protected Set<Player> idle = new LinkedHashSet<Player>();
+    protected int left = 0;      // Matches not yet started
+    protected int running = 0;   // Matches started but not finished
+
+    /** A new player (not in a match) **/
+    void addPlayer(Player p) {
+        pending.put(p, new ArrayDeque<Match>());
+        idle.add(p);
+    }
+
+    /** A match to be played (both its players already added) **/
+    void addMatch(Match m) {
+        pending.get(m.getHome()).addLast(m);
+        pending.get(m.getAway()).addLast(m);
+        left++;
+    }
+
+    /** The match has ended - both its players are free again **/
+    void finished(Match m) {
+        idle.add(m.getHome());
+        idle.add(m.getAway());
+        running--;
+    }
+
+    /**
+     * A match from next could not be started after all (the player was busy) - put it
+     * back to be played later.  The other player is free again.
+     **/
+    void retry(Match m, Player busy) {
+        running--;
+        idle.remove(busy);
+        idle.add(m.getHome() == busy ? m.getAway() : m.getHome());
+        addMatch(m);
+    }
+
+    /** Matches not yet started **/
+    int matchesLeft() { return left; }
+
+    /** Have all the matches been played? **/
+    boolean isDone() { return left == 0 && running == 0; }
+
+    /**
+     * The tournament has been started (again).
+     * @return Works out something to report to its owner - later, on another thread, without
+     *         the tournament's lock (null for nothing to report)
+     **/
+    Supplier<String> activated() { return null; }
+
+    /**
+     * The last match has finished.
+     * @return Works out something to report to its owner, as activated (null for nothing)
+     **/
+    Supplier<String> completed() { return null; }
+
+    /**
+     * Choose matches between idle players, as many as can be played at once.
+     * They are taken out of the queues and their players are no longer idle.
+     **/
+    List<Match> next() {
+        if (left == 0 || idle.size() < 2) return new ArrayList<Match>();
+        List<Match> chosen = choose(pending, idle);
+        left -= chosen.size();
+        running += chosen.size();
+        return chosen;
+    }
+
+    /**
+     * Choose matches between the free players, taking each out of the queues and
+     * its players out of free.
+     **/
+    protected List<Match> choose(Map<Player, ArrayDeque<Match>> queues, Set<Player> free) {
+        List<Match> chosen = new ArrayList<Match>();
+        List<Player> players = new ArrayList<Player>(free);
+        players.sort((a, b) -> queues.get(b).size() - queues.get(a).size());
+        for (Player p: players) {
+            if (!free.contains(p)) continue;  // Already chosen as an opponent
+            Match best = null;
+            int most = -1;
+            for (Match m: queues.get(p)) {
+                Player other = (m.getHome() == p) ? m.getAway() : m.getHome();
+                if (free.contains(other) && queues.get(other).size() > most) {
+                    best = m;
+                    most = queues.get(other).size();
+                }
+            }
+            if (best == null) continue;
+            take(best, queues, free);
+            chosen.add(best);
+        }
+        return chosen;
+    }
+
+    /** Take the match out of the queues and its players out of free **/
+    protected static void take(Match m, Map<Player, ArrayDeque<Match>> queues, Set<Player> free) {
+        queues.get(m.getHome()).remove(m);
+        queues.get(m.getAway()).remove(m);
+        free.remove(m.getHome());
+        free.remove(m.getAway());
+    }
+}
@@ -0,0 +1,273 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Server Project
+ * This project is designed to support multiple game platforms to test
+ * AI-based solutions.
+ *
+ * NioFrontEnd:
+ *    Non-blocking network front end for the GameServer.
+ *
+ * See README file for more details.
+ ********************/
+
+package cad.ai.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/***********************************************************
+ * Serves every client from a few selector threads instead of giving each
+ * ClientConnection a thread that polls its socket every 100 ms.
+ *   Selector 0 also accepts new clients, which are shared out round robin.
+ *   Each client has its own read buffer, split into lines as the bytes come
+ *   in, and a queue of output waiting for the socket to take it.  Every
+ *   complete line goes straight to the client's ClientConnection, so the
+ *   protocol (ServerProtocol.txt) is exactly the same as before.
+ ***********************************************************/
+public class NioFrontEnd {
+    public static final int READ_BUFFER = 4096;   // Bytes read from a client at a time
+    public static final int MAX_LINE = 65536;     // A client sending a longer line is disconnected
+    private static final Charset CHARSET = Charset.defaultCharset();  // As the blocking connections use
+
+    private GameServer server;
+    private int port;
+    private Loop[] loops;
+    private int next = 0;   // Loop for the next client
+
+    /**
+     * @param selectors Number of selector threads (at least 1)
+     **/
+    public NioFrontEnd(GameServer server, int port, int selectors) {
+        this.server = server;
+        this.port = port;
+        this.loops = new Loop[Math.max(1, selectors)];
+    }
+
+    /**
+     * Listen for and serve clients forever.  Selector 0 runs on the calling thread.
+     **/
+    public void run() throws IOException {
+        ServerSocketChannel listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(port));
+        listener.configureBlocking(false);
+        for (int i = 0; i < loops.length; i++) loops[i] = new Loop();
+        listener.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        for (int i = 1; i < loops.length; i++)
+            new Thread(loops[i], "GameServer selector " + i).start();
+        loops[0].run();
+    }
+
+    /**
+     * Accept every waiting client and hand each to a selector.
+     **/
+    private void accept(ServerSocketChannel listener) throws IOException {
+        SocketChannel channel;
+        while ((channel = listener.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Loop loop = loops[next];
+            next = (next + 1) % loops.length;
+            Client client = new Client(channel, loop);
+            try {
+                client.connection = server.addConnection(client);
+            } catch (IOException e) {
+                System.err.println("I/O Error: Terminating connection.");
+                System.err.println("  Message: " + e.getMessage());
+                channel.close();
+                continue;
+            }
+            loop.execute(() -> client.register());
+        }
+    }
+
+    /***********************************************************
+     * One client's socket and buffers.  send and close may be called from any
+     * thread; everything else happens on the client's selector thread.
+     ***********************************************************/
+    class Client {
+        private SocketChannel channel;
+        private Loop loop;
+        private SelectionKey key;
+        private ClientConnection connection;
+        private ByteBuffer input = ByteBuffer.allocate(READ_BUFFER);
+        private byte[] line = new byte[256];     // The line read so far
+        private int lineLength = 0;
+        private Deque<ByteBuffer> output = new ArrayDeque<ByteBuffer>();  // Guarded by this
+        private boolean writeRequested = false;  // Guarded by this
+        private volatile boolean closed = false;
+        private String remote;
+
+        private Client(SocketChannel channel, Loop loop) {
+            this.channel = channel;
+            this.loop = loop;
+            try {
+                remote = "" + channel.getRemoteAddress();
+            } catch (IOException e) {
+                remote = "?";
+            }
+        }
+
+        /** Where the client is connecting from (for debugging messages) **/
+        String getRemote() { return remote; }
+
+        /**
+         * Queue a message to be written to the client.
+         **/
+        void send(String message) {
+            ByteBuffer bytes = ByteBuffer.wrap(message.getBytes(CHARSET));
+            synchronized (this) {
+                if (closed) return;
+                output.addLast(bytes);
+                if (writeRequested) return;  // The selector will get to it
+                writeRequested = true;
+            }
+            loop.execute(() -> wantWrite());
+        }
+
+        /**
+         * Disconnect (the socket is closed by the selector thread).
+         **/
+        void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                output.clear();
+            }
+            loop.execute(() -> shutdown());
+        }
+
+        private void register() {
+            if (closed) { shutdown(); return; }
+            try {
+                int ops = SelectionKey.OP_READ;
+                synchronized (this) {
+                    if (writeRequested) ops |= SelectionKey.OP_WRITE;  // Sent to before it was registered
+                }
+                key = channel.register(loop.selector, ops, this);
+            } catch (IOException e) {
+                connection.close();
+            }
+        }
+
+        private void wantWrite() {
+            if (key != null && key.isValid()) key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        private void shutdown() {
+            if (key != null) key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+
+        /**
+         * Read what has arrived and pass on every complete line.
+         **/
+        private void read() throws IOException {
+            int n = channel.read(input);
+            if (n < 0) {
+                connection.close();  // End of transmission
+                return;
+            }
+            input.flip();
+            while (input.hasRemaining() && !closed) {
+                byte b = input.get();
+                if (b == '\n') {
+                    int length = (lineLength > 0 && line[lineLength - 1] == '\r') ? lineLength - 1 : lineLength;
+                    String message = new String(line, 0, length, CHARSET);
+                    lineLength = 0;
+                    connection.receive(message);
+                } else {
+                    if (lineLength == MAX_LINE) throw new IOException("Line too long");
+                    if (lineLength == line.length)
+                        line = Arrays.copyOf(line, Math.min(MAX_LINE, 2 * line.length));
+                    line[lineLength++] = b;
+                }
+            }
+            input.clear();
+        }
+
+        /**
+         * Write as much of the queued output as the socket will take.
+         **/
+        private synchronized void write() throws IOException {
+            while (!output.isEmpty()) {
+                ByteBuffer bytes = output.peekFirst();
+                channel.write(bytes);
+                if (bytes.hasRemaining()) return;  // Socket is full - wait to be told it's writable again
+                output.removeFirst();
+            }
+            writeRequested = false;
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /***********************************************************
+     * A selector thread.  Other threads hand it work through execute.
+     ***********************************************************/
+    private class Loop implements Runnable {
+        private Selector selector;
+        private ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+        Loop() throws IOException { selector = Selector.open(); }
+
+        /** Run this on the selector thread (soon) **/
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    System.err.println("ABORTING: " + e.getMessage());
+                    System.exit(1);
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null) task.run();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        try {
+                            accept((ServerSocketChannel) key.channel());
+                        } catch (IOException e) {
+                            System.err.println("I/O Error: Terminating connection.");
+                            System.err.println("  Message: " + e.getMessage());
+                        }
+                        continue;
+                    }
+                    Client client = (Client) key.attachment();
+                    try {
+                        if (key.isReadable()) client.read();
+                        if (key.isValid() && key.isWritable()) client.write();
+                    } catch (IOException e) {
+                        System.out.println("DEBUG: Client (" + client.getRemote() + "): I/O Exception: Ending connection. " + e.getMessage());
+                        client.connection.close();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -12,10 +12,11 @@
 package cad.ai.server;
 
 import java.util.ArrayList;
-import java.util.concurrent.FutureTask;
-import java.util.concurrent.Executors;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Callable;
+import java.util.function.Supplier;
 
 /***********************************************************
  * A basic round-robin tournament
@@ -33,15 +34,22 @@ public class RRTournament implements Callable<Integer> {
     private GameFactory gameFactory;   // Used to create new games
     private ArrayList<Player> player;  // Players in this tournament
     private ArrayList<Match> match;    // List of Matches (to play)
+    private MatchScheduler schedule = new MatchScheduler();  // The matches still to start and who is free to play them
     private boolean active;            // Is the tournament commencing.
     private boolean quit;              // If true, terminate the tournament completely
     private Player owner;              // The player that "owns" this tournament.
     private int id;                    // The id of this tournament
-    private ExecutorService executor;    // Used to create new threads (for the various Matches)
+    private ScheduledExecutorService scheduler;  // Runs all the Matches (they only need it when a move arrives or a clock runs out)
+    private ExecutorService matchThreads = null; // ... or a thread for each Match (Match.call), e.g. virtual threads
 
     private static int nextID = 0;     // Next ID for Tournament
     
-    public RRTournament(GameFactory g, Player owner) {
+    /**
+     * @param scheduler Plays the matches (Match.start) - shared with other tournaments,
+     *                  so it is up to the caller to shut it down
+     * @param matchThreads Play each match on its own thread from here instead (null = on the scheduler)
+     **/
+    public RRTournament(GameFactory g, Player owner, ScheduledExecutorService scheduler, ExecutorService matchThreads) {
         player = new ArrayList<Player>();
         match = new ArrayList<Match>();
         active = false;
@@ -50,7 +58,8 @@ public class RRTournament implements Callable<Integer> {
         this.owner = owner;
         owner.setTour(this);
         this.id = getNextID();
-        executor = Executors.newCachedThreadPool();
+        this.scheduler = scheduler;
+        this.matchThreads = matchThreads;
     }
 
     /**
@@ -64,21 +73,40 @@ public class RRTournament implements Callable<Integer> {
             return false;
 	
         // Create the new matched pairs (other,p and p,other)
+        schedule.addPlayer(p);
         for (Player other: player) {
-            match.add(new Match(other, p, gameFactory.newGame()));
-            match.add(new Match(p, other, gameFactory.newGame()));
+            addMatch(newMatch(other, p));
+            addMatch(newMatch(p, other));
         }
 
         p.setTour(this);  // Link this tournament to the player
         player.add(p);    // Add the player to the list
+        if (active) startAvailableMatches();
         return true;
     }
     
     /*** Accessor and mutator methods ***/
     public boolean isActive() { return active; }
-    public synchronized void setActive(boolean active) { this.active = active; }
+    public void setActive(boolean active) {
+        Supplier<String> report = null;
+        synchronized (this) {
+            this.active = active;
+            if (active) report = schedule.activated();
+        }
+        tell(report);
+        if (active) startAvailableMatches();
+    }
+
+    /**
+     * Plan and order the matches with this scheduler instead (before any players join).
+     **/
+    public synchronized void setScheduler(MatchScheduler schedule) {
+        if (!player.isEmpty()) throw new IllegalStateException("Players have already joined");
+        this.schedule = schedule;
+    }
     public synchronized void terminate() {
         this.quit = true;
+        notifyAll();
 
         // Inform all the players...
         for (Player p: player) p.postMessage("@TOUR:END");
@@ -87,42 +115,106 @@ public class RRTournament implements Callable<Integer> {
     public int getID() { return this.id; }
     public boolean isOwner(Player p) { return p == owner; }
     
+    /**
+     * Matches are started as players become free (see matchFinished), so this
+     * only has to wait for the tournament to be terminated.
+     **/
     public Integer call() {
-        while (!quit) {
-            try {
-                if (isActive()) startAvailableMatches();
-                Thread.sleep(1000);  // So it doesn't run constantly...
-            } catch (InterruptedException e) { }
+        synchronized (this) {
+            while (!quit) {
+                try {
+                    wait();
+                } catch (InterruptedException e) { }
+            }
         }
 
         return new Integer(0);
     }
 
+    private void addMatch(Match m) {
+        match.add(m);
+        schedule.addMatch(m);
+    }
+
+    private Match newMatch(Player home, Player away) {
+        Match m = new Match(home, away, gameFactory.newGame());
+        m.setOnFinish(this::matchFinished);
+        return m;
+    }
+
+    /**
+     * A match has ended - its players are free for their next matches, which start right away.
+     * They are chosen under the lock, but started (and the owner told) after releasing it.
+     **/
+    private void matchFinished(Match m) {
+        List<Match> chosen = new ArrayList<Match>();
+        Supplier<String> report = null;
+        synchronized (this) {
+            schedule.finished(m);
+            if (schedule.isDone()) report = schedule.completed();
+            else if (active && !quit) chosen = chooseMatches();
+        }
+        tell(report);
+        startMatches(chosen);
+    }
+
     /**
-     * Look through all matches and determine if any are ready to be played.
-     * This happens when two players are both currently not playing in another match.
-     * Start this match going.
-     * If all matches are completed it also finished the tournament...
+     * Start every match whose two players are both free (see MatchScheduler for
+     * which ones when there is a choice).
      **/
     private synchronized void startAvailableMatches() {
-        for (Match m: match) {
-            if (m.getState() == Match.State.NOT_STARTED) {
-                // Check if home player is free...
-                Player home = m.getHome();
-                Player away = m.getAway();
-                if (home.setMatch(m)) {
-                    // Home is available... how about away?
-                    if (away.setMatch(m)) {
-                        // Away is also available... start'er up
-                        debug("Starting match between " + home.getID() + " and " + away.getID());
-                        FutureTask<Integer> task = new FutureTask<Integer>(m);
-                        executor.execute(task);
-                    } else {
-                        home.clearMatch();  // Free the home player for another match
-                    }
+        startMatches(chooseMatches());
+    }
+
+    /**
+     * Take the matches to start next from the schedule and assign their players.
+     **/
+    private synchronized List<Match> chooseMatches() {
+        List<Match> chosen = new ArrayList<Match>();
+        for (Match m: schedule.next()) {
+            Player home = m.getHome();
+            Player away = m.getAway();
+            if (home.setMatch(m)) {
+                if (away.setMatch(m)) {
+                    chosen.add(m);  // Both are available...
+                    continue;
                 }
+                home.clearMatch();  // Free the home player for another match
+                schedule.retry(m, away);
+            } else {
+                schedule.retry(m, home);
             }
         }
+        return chosen;
+    }
+
+    /**
+     * Start'er up.  Each match begins (telling its players) on its own thread or the
+     * scheduler, never on the caller's: callers may hold the tournament's lock, a
+     * connection's or the server's, and posting to the players takes theirs.
+     **/
+    private void startMatches(List<Match> chosen) {
+        for (Match m: chosen) {
+            debug("Starting match between " + m.getHome().getID() + " and " + m.getAway().getID());
+            if (matchThreads != null) matchThreads.submit(m);
+            else scheduler.execute(() -> m.start(scheduler));
+        }
+    }
+
+    /**
+     * Report the scheduler's message (if any) to the console and the owner.  It is worked
+     * out and posted on another thread: callers may hold a connection's lock (setActive),
+     * or be a selector thread (--nio) that shouldn't wait for it.
+     **/
+    private void tell(Supplier<String> report) {
+        if (report == null) return;
+        ExecutorService poster = (matchThreads != null) ? matchThreads : scheduler;
+        poster.execute(() -> {
+                String message = report.get();
+                if (message == null) return;
+                debug(message);
+                owner.postMessage("@MESSAGE:" + message);
+            });
     }
 
     /**
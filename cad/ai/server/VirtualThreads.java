@@ -0,0 +1,53 @@
+/*******************
+ * CSC350: Intelligent Systems
+ * Spring 2019
+ *
+ * AI Game Server Project
+ * This project is designed to support multiple game platforms to test
+ * AI-based solutions.
+ *
+ * VirtualThreads:
+ *    Executors for the server's virtual thread mode (--virtual).
+ *
+ * See README file for more details.
+ ********************/
+
+package cad.ai.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/***********************************************************
+ * Virtual threads (Java 21) are found by reflection so the server still
+ * builds and runs on older Javas.  There the virtual thread mode falls back
+ * to ordinary threads - still one per connection, match and tournament,
+ * blocking rather than polling, which costs more memory but works the same.
+ ***********************************************************/
+public class VirtualThreads {
+    private VirtualThreads() { }
+
+    /**
+     * An executor starting a new virtual thread for every task, or null if this
+     * Java doesn't have them (or only as a preview that isn't enabled).
+     **/
+    public static ExecutorService newExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * newExecutor, or a thread per task (a cached pool) if there are no virtual threads.
+     **/
+    public static ExecutorService newExecutorOrFallback() {
+        ExecutorService executor = newExecutor();
+        if (executor != null) return executor;
+        System.err.println("WARNING: Java " + System.getProperty("java.version") +
+                           " has no virtual threads - using ordinary threads instead.");
+        return Executors.newCachedThreadPool();
+    }
+}